@@ -0,0 +1,78 @@
+package com.example.pdf;
+
+import org.apache.pdfbox.pdmodel.*;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+
+import java.io.*;
+import java.nio.file.*;
+
+/**
+ * Source documents for the benchmarks: the sample PDFs in input/ plus
+ * synthetic two-column resumes of a given page count ("synthetic-N")
+ */
+final class BenchmarkDocuments {
+
+    private BenchmarkDocuments() {}
+
+    static byte[] load(String name) throws IOException {
+        if (name.startsWith("synthetic-")) {
+            return synthetic(Integer.parseInt(name.substring("synthetic-".length())));
+        }
+        return Files.readAllBytes(inputDir().resolve(name));
+    }
+
+    // Works from both the project root and the benchmarks directory
+    private static Path inputDir() {
+        String configured = System.getProperty("bench.inputDir");
+        if (configured != null) return Paths.get(configured);
+        Path local = Paths.get("input");
+        return Files.isDirectory(local) ? local : Paths.get("..", "input");
+    }
+
+    /**
+     * Two-column resume: a skills sidebar on the left and experience on the right
+     */
+    static byte[] synthetic(int pages) throws IOException {
+        try (PDDocument doc = new PDDocument()) {
+            for (int p = 0; p < pages; p++) {
+                PDPage page = new PDPage(PDRectangle.LETTER);
+                doc.addPage(page);
+
+                try (PDPageContentStream cs = new PDPageContentStream(doc, page)) {
+                    float y = 740;
+                    writeLine(cs, PDType1Font.HELVETICA_BOLD, 14, 40, y, "SKILLS");
+                    for (int i = 0; i < 25; i++) {
+                        y -= 16;
+                        writeLine(cs, PDType1Font.HELVETICA, 10, 40, y, "Skill item " + (i + 1));
+                    }
+
+                    y = 740;
+                    writeLine(cs, PDType1Font.HELVETICA_BOLD, 14, 200, y, "EXPERIENCE");
+                    for (int job = 0; job < 6; job++) {
+                        y -= 22;
+                        writeLine(cs, PDType1Font.HELVETICA_BOLD, 11, 200, y,
+                                  "Senior Engineer " + (p * 6 + job + 1));
+                        for (int b = 0; b < 5; b++) {
+                            y -= 14;
+                            writeLine(cs, PDType1Font.HELVETICA, 10, 215, y,
+                                      "- Delivered measurable improvements to platform reliability and latency");
+                        }
+                    }
+                }
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            doc.save(out);
+            return out.toByteArray();
+        }
+    }
+
+    private static void writeLine(PDPageContentStream cs, PDType1Font font, float size,
+                                  float x, float y, String text) throws IOException {
+        cs.beginText();
+        cs.setFont(font, size);
+        cs.newLineAtOffset(x, y);
+        cs.showText(text);
+        cs.endText();
+    }
+}
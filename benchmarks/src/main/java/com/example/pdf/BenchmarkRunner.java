@@ -0,0 +1,25 @@
+package com.example.pdf;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler attached, so every result also
+ * reports allocation rate. Accepts the usual JMH command-line options.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cmd = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder()
+            .parent(cmd)
+            .addProfiler(GCProfiler.class);
+        if (cmd.getIncludes().isEmpty()) {
+            options.include(ResumeBenchmarks.class.getSimpleName());
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,244 @@
+package com.example.pdf;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the load -> analyze -> modify -> save path.
+ *
+ * Run with the GC profiler to get allocation rates alongside the timings:
+ *   java -jar target/benchmarks.jar          (BenchmarkRunner adds -prof gc)
+ *
+ * addExperienceEntry and save need a fresh document per call, so their
+ * allocation figures include the per-invocation setup.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResumeBenchmarks {
+
+    private static final String LONG_BULLET =
+        "Architected and deployed microservices-based e-commerce platform serving 500K+ daily users "
+        + "while reducing API response time by 65% through database query optimization and Redis caching";
+
+    private static final String[] RESPONSIBILITIES = {
+        "Architected and deployed microservices-based e-commerce platform serving 500K+ daily users",
+        "Implemented real-time analytics dashboard using React, Redux, and WebSocket technology",
+        "Reduced API response time by 65% through database query optimization and Redis caching",
+        "Led code reviews and mentored 3 junior developers in best practices and design patterns",
+        "Integrated CI/CD pipeline with Jenkins and Docker, achieving 40% faster deployment cycles"
+    };
+
+    @State(Scope.Benchmark)
+    public static class Source {
+        @Param({"resume1.pdf", "resume2.pdf", "resume3.pdf", "resume4.pdf",
+                "synthetic-1", "synthetic-5", "synthetic-50"})
+        public String document;
+
+        byte[] bytes;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            bytes = BenchmarkDocuments.load(document);
+            // The editor and detector report progress on stdout
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        }
+    }
+
+    // A loaded document shared by read-only benchmarks
+    @State(Scope.Thread)
+    public static class Loaded {
+        PDDocument document;
+
+        @Setup(Level.Trial)
+        public void setUp(Source source) throws IOException {
+            document = PDDocument.load(source.bytes);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            document.close();
+        }
+    }
+
+    // An analysed editor kept for the whole trial, for read-only benchmarks
+    @State(Scope.Thread)
+    public static class Ready {
+        ResumeEditor editor;
+
+        @Setup(Level.Trial)
+        public void setUp(Source source) throws IOException {
+            editor = new ResumeEditor(PDDocument.load(source.bytes));
+            editor.analyze();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            editor.close();
+        }
+    }
+
+    // First-page text runs captured once, so clustering can be measured on its own
+    @State(Scope.Thread)
+    public static class Runs {
+        PDDocument document;
+        List<String> texts = new ArrayList<>();
+        List<PDFont> fonts = new ArrayList<>();
+        FloatList sizes = new FloatList();
+        FloatList ys = new FloatList();
+        List<FloatList> xs = new ArrayList<>();
+
+        @Setup(Level.Trial)
+        public void setUp(Source source) throws IOException {
+            document = PDDocument.load(source.bytes);
+            new DocumentAnalyzer()
+                .setPageRange(1, 1)
+                .addConsumer(new AnalysisConsumer() {
+                    @Override
+                    public void textRun(TextRun run) {
+                        texts.add(run.getText());
+                        fonts.add(run.getFont());
+                        sizes.add(run.getFontSizeInPt());
+                        ys.add(run.getY());
+                        FloatList glyphs = new FloatList(run.getGlyphCount());
+                        for (int i = 0; i < run.getGlyphCount(); i++) {
+                            glyphs.add(run.getGlyphX(i));
+                        }
+                        xs.add(glyphs);
+                    }
+
+                    @Override
+                    public void contribute(DocumentModel.Builder model) {
+                    }
+                })
+                .analyze(document);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            document.close();
+        }
+    }
+
+    // Where the analysis pass reads its text runs from
+    @State(Scope.Benchmark)
+    public static class Extraction {
+        @Param({"STRIPPER", "GLYPHS", "GLYPHS_SORTED"})
+        public DocumentAnalyzer.TextSource textSource;
+    }
+
+    // A freshly analysed editor per invocation, for benchmarks that modify it
+    @State(Scope.Thread)
+    public static class Analyzed {
+        ResumeEditor editor;
+
+        @Setup(Level.Invocation)
+        public void setUp(Source source) throws IOException {
+            editor = new ResumeEditor(PDDocument.load(source.bytes));
+            editor.analyze();
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown() throws IOException {
+            editor.close();
+        }
+    }
+
+    // An edited editor per invocation, ready to be saved
+    @State(Scope.Thread)
+    public static class Edited {
+        @Param({"FAST", "DEFAULT", "MAX"})
+        public StreamCompressor.Level compression;
+
+        ResumeEditor editor;
+
+        @Setup(Level.Invocation)
+        public void setUp(Source source) throws IOException {
+            editor = new ResumeEditor(PDDocument.load(source.bytes));
+            editor.setCompression(compression);
+            editor.analyze();
+            editor.applyConfig(ResumeModificationConfig.getDefaultConfig());
+        }
+    }
+
+    @Benchmark
+    public void load(Source source, Blackhole bh) throws IOException {
+        try (PDDocument doc = PDDocument.load(source.bytes)) {
+            bh.consume(doc.getNumberOfPages());
+        }
+    }
+
+    @Benchmark
+    public void resumeEditorAnalyze(Loaded loaded, Blackhole bh) throws IOException {
+        ResumeEditor editor = new ResumeEditor(loaded.document);
+        editor.analyze();
+        bh.consume(editor);
+    }
+
+    /**
+     * The editor's analysis pass alone, per text source
+     */
+    @Benchmark
+    public DocumentModel textExtraction(Loaded loaded, Extraction extraction) throws IOException {
+        return new DocumentAnalyzer()
+            .setTextSource(extraction.textSource)
+            .addConsumer(new ColumnConsumer())
+            .addConsumer(new SectionConsumer())
+            .addConsumer(new FontConsumer())
+            .analyze(loaded.document);
+    }
+
+    @Benchmark
+    public void layoutDetectorAnalyze(Loaded loaded, Blackhole bh) throws IOException {
+        LayoutDetector detector = new LayoutDetector(loaded.document);
+        detector.analyze();
+        bh.consume(detector.getLayoutType());
+    }
+
+    /**
+     * Column clustering alone; gc.alloc.rate.norm should stay flat as the
+     * glyph count grows
+     */
+    @Benchmark
+    public DocumentModel columnClustering(Runs runs) {
+        ColumnConsumer consumer = new ColumnConsumer();
+        TextRun run = new TextRun();
+        for (int i = 0; i < runs.texts.size(); i++) {
+            run.reset(0, runs.texts.get(i), runs.fonts.get(i), runs.sizes.get(i),
+                      runs.ys.get(i), runs.xs.get(i));
+            consumer.textRun(run);
+        }
+        DocumentModel.Builder model = new DocumentModel.Builder(runs.document);
+        consumer.contribute(model);
+        return model.build();
+    }
+
+    @Benchmark
+    public void addExperienceEntry(Analyzed analyzed) throws IOException {
+        analyzed.editor.addExperienceEntry(
+            "Software Development Engineer",
+            "CloudTech Solutions Pvt. Ltd.",
+            "March 2024 - Present",
+            RESPONSIBILITIES);
+    }
+
+    @Benchmark
+    public List<String> wrapText(Ready ready) throws IOException {
+        return ready.editor.wrapText(LONG_BULLET, PDType1Font.HELVETICA, 10.5f, 300);
+    }
+
+    @Benchmark
+    public void save(Edited edited) throws IOException {
+        edited.editor.save(OutputStream.nullOutputStream());
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.pdf;
+
+import org.apache.pdfbox.pdmodel.*;
+
+/**
+ * Receives the text runs of a single analysis pass
+ */
+interface AnalysisConsumer {
+
+    default void startPage(int pageIndex, PDPage page) {}
+
+    /**
+     * Whether results depend on runs arriving top to bottom, left to right
+     * within a page rather than in content-stream order
+     */
+    default boolean needsReadingOrder() {
+        return false;
+    }
+
+    void textRun(TextRun run);
+
+    /**
+     * Store this consumer's results on the model being built
+     */
+    void contribute(DocumentModel.Builder model);
+}
@@ -0,0 +1,349 @@
+package com.example.pdf;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Batch resume processing pipeline.
+ *
+ * Runs load -> analyze -> modify -> save as separate stages joined by
+ * bounded queues, all inside one JVM. The I/O stages run on virtual
+ * threads, the CPU stages on a fixed pool with one worker per core.
+ * The JVM doesn't count allocation on virtual threads, so loads and saves
+ * report their allocation as not measured.
+ * A full queue blocks its producer, and that blocked time is reported
+ * per stage as back-pressure.
+ */
+public class BatchResumeProcessor {
+
+    private final ResumeModificationConfig config;
+    private int queueCapacity = 32;
+    private int ioWorkers = 16;
+    private int cpuWorkers = Runtime.getRuntime().availableProcessors();
+
+    public BatchResumeProcessor(ResumeModificationConfig config) {
+        this.config = config;
+    }
+
+    public BatchResumeProcessor setQueueCapacity(int capacity) {
+        this.queueCapacity = Math.max(1, capacity);
+        return this;
+    }
+
+    public BatchResumeProcessor setIoWorkers(int workers) {
+        this.ioWorkers = Math.max(1, workers);
+        return this;
+    }
+
+    public BatchResumeProcessor setCpuWorkers(int workers) {
+        this.cpuWorkers = Math.max(1, workers);
+        return this;
+    }
+
+    /**
+     * Collect jobs from a directory of PDFs or from a manifest file.
+     * Manifest lines are "input.pdf [output.pdf]"; blank lines and lines
+     * starting with # are ignored. Relative paths resolve against the
+     * manifest's directory, and missing outputs go to outputDir.
+     */
+    public static List<BatchJob> collectJobs(Path source, Path outputDir) throws IOException {
+        List<BatchJob> jobs = new ArrayList<>();
+
+        if (Files.isDirectory(source)) {
+            try (Stream<Path> files = Files.list(source)) {
+                for (Path input : files
+                        .filter(f -> f.getFileName().toString().toLowerCase().endsWith(".pdf"))
+                        .sorted()
+                        .collect(Collectors.toList())) {
+                    jobs.add(new BatchJob(input, defaultOutput(input, outputDir)));
+                }
+            }
+            return jobs;
+        }
+
+        Path baseDir = source.toAbsolutePath().getParent();
+        for (String line : Files.readAllLines(source)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+
+            String[] parts = line.split("\\s+");
+            Path input = baseDir.resolve(parts[0]);
+            Path output = parts.length > 1 ? baseDir.resolve(parts[1])
+                                           : defaultOutput(input, outputDir);
+            jobs.add(new BatchJob(input, output));
+        }
+        return jobs;
+    }
+
+    static Path defaultOutput(Path input, Path outputDir) {
+        String name = input.getFileName().toString();
+        String base = name.substring(0, name.length() - 4);
+        return outputDir.resolve(base + "_updated.pdf");
+    }
+
+    /**
+     * Push every job through the pipeline and wait for it to drain. Jobs
+     * are pulled as the load stage has room, so a lazy Iterable (such as
+     * an {@link EditPlanReader}) is never read ahead of the pipeline.
+     */
+    public BatchReport process(Iterable<BatchJob> jobs) throws InterruptedException {
+        Stage load = new Stage("load", ioWorkers, queueCapacity, job -> {
+            job.document = new DocumentLoader()
+                .setReportListener(report -> job.loadReport = report)
+                .load(job.input.toFile());
+        });
+        Stage analyze = new Stage("analyze", cpuWorkers, queueCapacity, job -> {
+            job.editor = new ResumeEditor(job.document);
+            job.editor.analyze();
+        });
+        Stage modify = new Stage("modify", cpuWorkers, queueCapacity, job -> {
+            job.editor.applyConfig(job.config != null ? job.config : config);
+        });
+        Stage save = new Stage("save", ioWorkers, queueCapacity, job -> {
+            Files.createDirectories(job.output.toAbsolutePath().getParent());
+            job.editor.save(job.output.toString());
+            job.imageResult = job.editor.getImageResult();
+            job.fontFallbacks = job.editor.getFontFallbacks();
+            job.document = null;
+            job.editor = null;
+        });
+        List<Stage> stages = Arrays.asList(load, analyze, modify, save);
+        BlockingQueue<BatchJob> done = new LinkedBlockingQueue<>();
+
+        ExecutorService ioPool = Executors.newVirtualThreadPerTaskExecutor();
+        // Stage workers are long-lived loops, so every one needs its own thread
+        ExecutorService cpuPool = Executors.newFixedThreadPool(analyze.workers + modify.workers);
+        long start = System.nanoTime();
+        try {
+            load.start(ioPool, analyze.input);
+            analyze.start(cpuPool, modify.input);
+            modify.start(cpuPool, save.input);
+            save.start(ioPool, done);
+
+            for (BatchJob job : jobs) {
+                load.input.put(job);
+            }
+
+            // Shut the stages down in order once each one has drained
+            for (Stage stage : stages) {
+                stage.finish();
+            }
+        } finally {
+            // Interrupts workers still parked on a queue if a stage failed to drain
+            ioPool.shutdownNow();
+            cpuPool.shutdownNow();
+        }
+
+        List<BatchJob> results = new ArrayList<>(done);
+        return new BatchReport(stages, results, System.nanoTime() - start);
+    }
+
+    // Work item travelling through the pipeline
+    public static class BatchJob {
+        final Path input;
+        final Path output;
+        // Edits for this resume only; null applies the processor's config
+        final ResumeModificationConfig config;
+        PDDocument document;
+        ResumeEditor editor;
+        DocumentLoader.LoadReport loadReport;
+        ImageDownsampler.Result imageResult;
+        Map<String, String> fontFallbacks = Collections.emptyMap();
+        Throwable error;
+        String failedStage;
+
+        public BatchJob(Path input, Path output) {
+            this(input, output, null);
+        }
+
+        public BatchJob(Path input, Path output, ResumeModificationConfig config) {
+            this.input = input;
+            this.output = output;
+            this.config = config;
+        }
+
+        public Path getInput() { return input; }
+        public Path getOutput() { return output; }
+        public DocumentLoader.LoadReport getLoadReport() { return loadReport; }
+        public ImageDownsampler.Result getImageResult() { return imageResult; }
+        public Map<String, String> getFontFallbacks() { return fontFallbacks; }
+        public Throwable getError() { return error; }
+        public String getFailedStage() { return failedStage; }
+        public boolean isSuccessful() { return error == null; }
+    }
+
+    interface StageAction {
+        void apply(BatchJob job) throws Exception;
+    }
+
+    static class Stage {
+        private static final BatchJob END = new BatchJob(null, null);
+
+        final String name;
+        final int workers;
+        final BlockingQueue<BatchJob> input;
+        private final StageAction action;
+        private final List<Future<?>> running = new ArrayList<>();
+        private BlockingQueue<BatchJob> output;
+
+        final AtomicLong processed = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final AtomicLong busyNanos = new AtomicLong();
+        final AtomicLong blockedNanos = new AtomicLong();
+
+        Stage(String name, int workers, int capacity, StageAction action) {
+            this.name = name;
+            this.workers = workers;
+            this.input = new ArrayBlockingQueue<>(capacity);
+            this.action = action;
+        }
+
+        void start(ExecutorService pool, BlockingQueue<BatchJob> next) {
+            this.output = next;
+            for (int i = 0; i < workers; i++) {
+                running.add(pool.submit(this::work));
+            }
+        }
+
+        /**
+         * Tell every worker to stop after the queued jobs, and wait for them
+         */
+        void finish() throws InterruptedException {
+            for (int i = 0; i < workers; i++) {
+                input.put(END);
+            }
+            for (Future<?> worker : running) {
+                try {
+                    worker.get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Stage " + name + " worker died", e.getCause());
+                }
+            }
+        }
+
+        private Void work() throws InterruptedException {
+            while (true) {
+                BatchJob job = input.take();
+                if (job == END) return null;
+
+                if (job.error == null) {
+                    long begin = System.nanoTime();
+                    try {
+                        action.apply(job);
+                        processed.incrementAndGet();
+                    } catch (Throwable e) {
+                        // Errors too: an OutOfMemoryError or StackOverflowError on one
+                        // malformed PDF must fail that job, not kill the worker
+                        job.error = e;
+                        job.failedStage = name;
+                        failed.incrementAndGet();
+                        closeQuietly(job);
+                    }
+                    busyNanos.addAndGet(System.nanoTime() - begin);
+                }
+
+                // Failed jobs still flow through so they show up in the report
+                long blockedFrom = System.nanoTime();
+                output.put(job);
+                blockedNanos.addAndGet(System.nanoTime() - blockedFrom);
+            }
+        }
+
+        private static void closeQuietly(BatchJob job) {
+            try {
+                if (job.document != null) job.document.close();
+            } catch (IOException | RuntimeException ignored) {
+                // Already failing; nothing more to report
+            }
+            job.document = null;
+            job.editor = null;
+        }
+    }
+
+    /**
+     * Per-stage throughput and back-pressure of one batch run
+     */
+    public static class BatchReport {
+        private final List<Stage> stages;
+        private final List<BatchJob> jobs;
+        private final long elapsedNanos;
+
+        BatchReport(List<Stage> stages, List<BatchJob> jobs, long elapsedNanos) {
+            this.stages = stages;
+            this.jobs = jobs;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public List<BatchJob> getJobs() { return jobs; }
+
+        public long getSucceeded() {
+            return jobs.stream().filter(BatchJob::isSuccessful).count();
+        }
+
+        public void print(PrintStream out) {
+            double seconds = elapsedNanos / 1e9;
+            out.printf("Processed %d resumes in %.2fs (%d failed)%n",
+                       jobs.size(), seconds, jobs.size() - getSucceeded());
+            out.printf("%-8s %7s %7s %9s %8s %12s%n",
+                       "stage", "workers", "done", "items/s", "busy", "blocked(ms)");
+            for (Stage stage : stages) {
+                double busy = stage.busyNanos.get() / (elapsedNanos * (double) stage.workers);
+                out.printf("%-8s %7d %7d %9.1f %7.0f%% %12d%n",
+                           stage.name,
+                           stage.workers,
+                           stage.processed.get(),
+                           stage.processed.get() / seconds,
+                           busy * 100,
+                           TimeUnit.NANOSECONDS.toMillis(stage.blockedNanos.get()));
+            }
+            BatchJob largest = null;
+            for (BatchJob job : jobs) {
+                if (job.loadReport != null && job.loadReport.getAllocatedBytes() >= 0 && (largest == null
+                        || job.loadReport.getAllocatedBytes() > largest.loadReport.getAllocatedBytes())) {
+                    largest = job;
+                }
+            }
+            if (largest != null) {
+                out.println("Most allocating load: " + largest.loadReport);
+            } else {
+                out.println("Load allocation: not measured (loads run on virtual threads)");
+            }
+            if (ResumeEditor.LAYOUT_CACHE != null) {
+                out.println(ResumeEditor.LAYOUT_CACHE);
+            }
+            if (ResumeEditor.STAMP_CACHE != null) {
+                out.println(ResumeEditor.STAMP_CACHE);
+            }
+            long imageBytesSaved = 0;
+            for (BatchJob job : jobs) {
+                if (job.imageResult != null
+                        && (job.imageResult.downsampled > 0 || job.imageResult.failed > 0)) {
+                    out.println("  " + job.output.getFileName() + ": " + job.imageResult);
+                    imageBytesSaved += job.imageResult.getBytesSaved();
+                }
+            }
+            if (imageBytesSaved > 0) {
+                out.printf("Image downsampling saved %,d bytes%n", imageBytesSaved);
+            }
+            for (BatchJob job : jobs) {
+                if (!job.fontFallbacks.isEmpty()) {
+                    out.println("  " + job.output.getFileName() + ": font fallbacks " + job.fontFallbacks);
+                }
+            }
+            for (BatchJob job : jobs) {
+                if (!job.isSuccessful()) {
+                    out.println("  FAILED " + job.input + " at " + job.failedStage
+                                + ": " + (job.error.getMessage() != null
+                                          ? job.error.getMessage() : job.error));
+                }
+            }
+        }
+    }
+}
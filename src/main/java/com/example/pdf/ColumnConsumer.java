@@ -0,0 +1,70 @@
+package com.example.pdf;
+
+import org.apache.pdfbox.pdmodel.*;
+
+import java.util.*;
+
+/**
+ * Clusters glyph X positions on the first page into columns
+ */
+class ColumnConsumer implements AnalysisConsumer {
+    private final FloatList xPositions = new FloatList();
+    private float pageWidth;
+
+    @Override
+    public void startPage(int pageIndex, PDPage page) {
+        if (pageIndex == 0) {
+            pageWidth = page.getMediaBox().getWidth();
+        }
+    }
+
+    @Override
+    public void textRun(TextRun run) {
+        if (run.getPageIndex() != 0) return;
+        for (int i = 0; i < run.getGlyphCount(); i++) {
+            xPositions.add(run.getGlyphX(i));
+        }
+    }
+
+    @Override
+    public void contribute(DocumentModel.Builder model) {
+        if (pageWidth == 0) {
+            pageWidth = model.getPageWidth(0);
+        }
+        List<LayoutAnalyzer.ColumnInfo> columns = new ArrayList<>();
+
+        if (xPositions.isEmpty()) {
+            columns.add(new LayoutAnalyzer.ColumnInfo(50, pageWidth - 50));
+            model.setLayout("SINGLE_COLUMN", 1, columns, pageWidth - 100);
+            return;
+        }
+
+        // Cluster X positions in one sweep. Sorted ascending, every earlier
+        // centre is at or left of x, so only the last one can be within 40pt
+        xPositions.sort();
+        FloatList clusterCenters = new FloatList(8);
+        float lastCenter = xPositions.get(0);
+        clusterCenters.add(lastCenter);
+
+        for (int i = 1; i < xPositions.size(); i++) {
+            float x = xPositions.get(i);
+            if (Math.abs(x - lastCenter) >= 40) {
+                lastCenter = x;
+                clusterCenters.add(x);
+            }
+        }
+
+        int columnCount = clusterCenters.size();
+
+        if (columnCount == 1) {
+            columns.add(new LayoutAnalyzer.ColumnInfo(clusterCenters.get(0), pageWidth - 50));
+            model.setLayout("SINGLE_COLUMN", columnCount, columns, pageWidth - 100);
+        } else {
+            // Assume left is narrower sidebar, right is main
+            float col1End = (clusterCenters.get(0) + clusterCenters.get(1)) / 2;
+            columns.add(new LayoutAnalyzer.ColumnInfo(clusterCenters.get(0), col1End));
+            columns.add(new LayoutAnalyzer.ColumnInfo(col1End, pageWidth - 50));
+            model.setLayout("TWO_COLUMN", columnCount, columns, columns.get(1).width());
+        }
+    }
+}
@@ -0,0 +1,511 @@
+package com.example.pdf;
+
+import org.apache.pdfbox.cos.*;
+import org.apache.pdfbox.pdfwriter.COSWriter;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+
+import java.io.*;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Writes a document as a PDF 1.5 file with shared resources deduplicated,
+ * small objects packed into object streams and a compressed xref stream.
+ *
+ * PDFBox 2.0's own writer has no object or xref streams, so this one
+ * serialises the object graph itself. Objects are chosen the way
+ * COSWriter chooses them: everything reachable from the trailer, with
+ * streams and non-direct dictionaries written as indirect objects and
+ * everything else inline.
+ *
+ * Before numbering, shared resources are hashed over their entries and
+ * data, with references standing for the object they point to: Font,
+ * FontDescriptor, ExtGState and Encoding dictionaries, the streams a font
+ * descriptor or font points to (font programs, ToUnicode, CIDToGIDMap,
+ * CIDSet), images and ICC profiles. Objects that hash alike are merged
+ * into one, repeating until nothing more merges, so a font embedded twice
+ * merges its font file, then its descriptor, then the font dictionaries.
+ * Page content and form streams are never merged, even when equal: each
+ * page must keep its own, since editors rewrite them in place.
+ *
+ * Streams are written as they are; every other object goes into an
+ * object stream of up to 100 objects. Encrypted documents aren't
+ * supported.
+ *
+ * Like PDDocument.save, a write first subsets the fonts loaded for
+ * subsetting. PDFBox 2.0 keeps those in the private field
+ * PDDocument.fontsToSubset, which is read reflectively. That ties this
+ * class to the PDFBox version pinned in pom.xml (2.0.29); recheck the
+ * field when upgrading. If it is gone, a compact save fails with an
+ * IOException rather than writing fonts that were never subset.
+ */
+public class CompactWriter {
+
+    /**
+     * What a write produced
+     */
+    public static class Result {
+        public final int objects;
+        public final int packed;
+        public final int duplicates;
+
+        Result(int objects, int packed, int duplicates) {
+            this.objects = objects;
+            this.packed = packed;
+            this.duplicates = duplicates;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d objects, %d in object streams, %d duplicates merged",
+                                 objects, packed, duplicates);
+        }
+    }
+
+    private static final int OBJECTS_PER_STREAM = 100;
+    private static final Set<COSName> SHARED_TYPES = new HashSet<>(Arrays.asList(
+        COSName.FONT, COSName.FONT_DESC, COSName.EXT_G_STATE, COSName.ENCODING));
+    // Streams a font or font descriptor points to
+    private static final List<COSName> FONT_STREAMS = Arrays.asList(
+        COSName.FONT_FILE, COSName.FONT_FILE2, COSName.FONT_FILE3,
+        COSName.TO_UNICODE, COSName.CID_TO_GID_MAP, COSName.CID_SET);
+    private static final byte[] BINARY_COMMENT = { '%', (byte) 0xE2, (byte) 0xE3, (byte) 0xCF, (byte) 0xD3, '\n' };
+
+    // Indirect objects in the order they are reached, and the number of each
+    private final List<COSBase> objects = new ArrayList<>();
+    private final Map<COSBase, Integer> numbers = new IdentityHashMap<>();
+    // Duplicates and the object each was merged into
+    private final Map<COSBase, COSBase> merged = new IdentityHashMap<>();
+    // Streams that are shared resources, and so may be merged
+    private final Set<COSBase> resourceStreams = Collections.newSetFromMap(new IdentityHashMap<>());
+    // Object streams, numbered after the objects, and where each was written
+    private final Map<Integer, Long> objectStreamOffsets = new HashMap<>();
+
+    public Result write(PDDocument document, OutputStream output) throws IOException {
+        if (document.isEncrypted()) {
+            throw new IOException("Compact save doesn't support encrypted documents");
+        }
+        subsetFonts(document);
+
+        COSDictionary trailer = document.getDocument().getTrailer();
+        collect(trailer);
+        int duplicates = deduplicate();
+        if (duplicates > 0) {
+            objects.clear();
+            numbers.clear();
+            collect(trailer);
+        }
+
+        DocumentSaver.CountingOutputStream out = new DocumentSaver.CountingOutputStream(
+            output instanceof BufferedOutputStream ? output : new BufferedOutputStream(output));
+        float version = Math.max(1.5f, document.getVersion());
+        out.write(ascii("%PDF-" + version + "\n"));
+        out.write(BINARY_COMMENT);
+
+        // Per object: 1 = offset in the file, 2 = object stream and index in it
+        int count = objects.size();
+        long[] offsets = new long[count + 1];
+        int[] containers = new int[count + 1];
+        int[] indexes = new int[count + 1];
+
+        int nextNumber = count + 1;
+        List<Integer> batch = new ArrayList<>();
+        int packed = 0;
+        for (int i = 0; i < count; i++) {
+            int number = i + 1;
+            COSBase object = objects.get(i);
+            if (object instanceof COSStream) {
+                offsets[number] = out.count;
+                writeStream(out, number, (COSStream) object);
+                continue;
+            }
+            batch.add(number);
+            packed++;
+            if (batch.size() == OBJECTS_PER_STREAM) {
+                nextNumber = flushBatch(out, batch, nextNumber, containers, indexes);
+            }
+        }
+        if (!batch.isEmpty()) {
+            nextNumber = flushBatch(out, batch, nextNumber, containers, indexes);
+        }
+
+        writeXref(out, trailer, nextNumber, offsets, containers, indexes);
+        out.flush();
+        return new Result(count, packed, duplicates);
+    }
+
+    // Pack the batched objects into the next object stream
+    private int flushBatch(DocumentSaver.CountingOutputStream out, List<Integer> batch, int number,
+                           int[] containers, int[] indexes) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        StringBuilder header = new StringBuilder();
+        for (int i = 0; i < batch.size(); i++) {
+            int member = batch.get(i);
+            header.append(member).append(' ').append(body.size()).append(' ');
+            writeDirect(body, objects.get(member - 1));
+            body.write('\n');
+            containers[member] = number;
+            indexes[member] = i;
+        }
+        byte[] head = ascii(header.toString());
+        ByteArrayOutputStream data = new ByteArrayOutputStream(head.length + body.size());
+        data.write(head);
+        body.writeTo(data);
+
+        COSDictionary dict = new COSDictionary();
+        dict.setItem(COSName.TYPE, COSName.OBJ_STM);
+        dict.setInt(COSName.N, batch.size());
+        dict.setInt(COSName.FIRST, head.length);
+        dict.setItem(COSName.FILTER, COSName.FLATE_DECODE);
+        byte[] encoded = StreamCompressor.deflate(data.toByteArray(), StreamCompressor.Level.DEFAULT);
+
+        objectStreamOffsets.put(number, out.count);
+        writeRawStream(out, number, dict, encoded);
+        batch.clear();
+        return number + 1;
+    }
+
+    private void writeXref(DocumentSaver.CountingOutputStream out, COSDictionary trailer, int number,
+                           long[] offsets, int[] containers, int[] indexes) throws IOException {
+        long xrefOffset = out.count;
+        int size = number + 1;
+        ByteArrayOutputStream entries = new ByteArrayOutputStream(size * 7);
+        entry(entries, 0, 0, 0xFFFF);
+        for (int n = 1; n < size; n++) {
+            if (n < offsets.length && containers[n] != 0) {
+                entry(entries, 2, containers[n], indexes[n]);
+            } else if (n < offsets.length) {
+                entry(entries, 1, offsets[n], 0);
+            } else if (n == number) {
+                entry(entries, 1, xrefOffset, 0);
+            } else {
+                entry(entries, 1, objectStreamOffsets.get(n), 0);
+            }
+        }
+
+        COSDictionary dict = new COSDictionary();
+        dict.setItem(COSName.TYPE, COSName.XREF);
+        dict.setInt(COSName.SIZE, size);
+        COSArray widths = new COSArray();
+        widths.add(COSInteger.get(1));
+        widths.add(COSInteger.get(4));
+        widths.add(COSInteger.get(2));
+        dict.setItem(COSName.W, widths);
+        for (COSName key : Arrays.asList(COSName.ROOT, COSName.INFO)) {
+            COSBase value = trailer.getItem(key);
+            if (value != null) dict.setItem(key, value);
+        }
+        dict.setItem(COSName.ID, trailer.getDictionaryObject(COSName.ID) instanceof COSArray
+            ? trailer.getDictionaryObject(COSName.ID) : newId());
+        dict.setItem(COSName.FILTER, COSName.FLATE_DECODE);
+        writeRawStream(out, number, dict,
+                       StreamCompressor.deflate(entries.toByteArray(), StreamCompressor.Level.DEFAULT));
+
+        out.write(ascii("startxref\n" + xrefOffset + "\n%%EOF\n"));
+    }
+
+    private static void entry(ByteArrayOutputStream out, int type, long field2, int field3) {
+        out.write(type);
+        out.write((int) (field2 >>> 24));
+        out.write((int) (field2 >>> 16));
+        out.write((int) (field2 >>> 8));
+        out.write((int) field2);
+        out.write(field3 >>> 8);
+        out.write(field3);
+    }
+
+    private static COSArray newId() {
+        byte[] id = new byte[16];
+        new Random().nextBytes(id);
+        COSArray array = new COSArray();
+        array.add(new COSString(id));
+        array.add(new COSString(id));
+        return array;
+    }
+
+    // Number every indirect object reachable from the trailer
+    private void collect(COSDictionary trailer) {
+        Deque<COSBase> pending = new ArrayDeque<>();
+        for (COSName key : Arrays.asList(COSName.ROOT, COSName.INFO)) {
+            COSBase value = trailer.getItem(key);
+            if (value != null) visit(value, pending);
+        }
+        while (!pending.isEmpty()) {
+            COSBase object = pending.poll();
+            visitEntries(object, pending);
+        }
+    }
+
+    private void visit(COSBase value, Deque<COSBase> pending) {
+        COSBase indirect = indirectTarget(value);
+        if (indirect != null) {
+            if (!numbers.containsKey(indirect)) {
+                objects.add(indirect);
+                numbers.put(indirect, objects.size());
+                pending.add(indirect);
+            }
+            return;
+        }
+        visitEntries(inline(value), pending);
+    }
+
+    private void visitEntries(COSBase object, Deque<COSBase> pending) {
+        if (object instanceof COSDictionary) {
+            for (COSBase value : ((COSDictionary) object).getValues()) {
+                if (value != null) visit(value, pending);
+            }
+        } else if (object instanceof COSArray) {
+            for (COSBase value : (COSArray) object) {
+                if (value != null) visit(value, pending);
+            }
+        }
+    }
+
+    /**
+     * The object a value refers to, if it is written as a reference:
+     * streams, dictionaries behind a reference, and dictionaries not
+     * marked direct, the same choice COSWriter makes
+     */
+    private COSBase indirectTarget(COSBase value) {
+        COSBase object = value;
+        boolean referenced = false;
+        if (value instanceof COSObject) {
+            object = ((COSObject) value).getObject();
+            referenced = true;
+        }
+        if (!(object instanceof COSDictionary)) return null;
+        if (!referenced && !(object instanceof COSStream) && object.isDirect()) return null;
+        COSBase target = merged.get(object);
+        return target != null ? target : object;
+    }
+
+    private static COSBase inline(COSBase value) {
+        if (value instanceof COSObject) {
+            COSBase object = ((COSObject) value).getObject();
+            return object != null ? object : COSNull.NULL;
+        }
+        return value;
+    }
+
+    /**
+     * Merge shared resources with equal content
+     *
+     * @return the number of objects merged away
+     */
+    private int deduplicate() throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        findResourceStreams();
+
+        int total = 0;
+        int mergedThisPass;
+        do {
+            mergedThisPass = 0;
+            Map<String, COSBase> firstByHash = new HashMap<>();
+            for (COSBase object : objects) {
+                if (merged.containsKey(object) || !isShared(object)) continue;
+                String hash = hash(digest, (COSDictionary) object);
+                COSBase first = firstByHash.putIfAbsent(hash, object);
+                if (first != null) {
+                    merged.put(object, first);
+                    mergedThisPass++;
+                }
+            }
+            total += mergedThisPass;
+        } while (mergedThisPass > 0);
+        return total;
+    }
+
+    private boolean isShared(COSBase object) {
+        if (object instanceof COSStream) {
+            return resourceStreams.contains(object);
+        }
+        return SHARED_TYPES.contains(((COSDictionary) object).getCOSName(COSName.TYPE));
+    }
+
+    /**
+     * Sort out the streams that are resources: font streams, images and
+     * ICC profiles, less any stream a page uses as content
+     */
+    private void findResourceStreams() {
+        Set<COSBase> contents = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (COSBase object : objects) {
+            COSDictionary dict = (COSDictionary) object;
+            if (object instanceof COSStream && COSName.IMAGE.equals(dict.getCOSName(COSName.SUBTYPE))) {
+                resourceStreams.add(object);
+            }
+            COSName type = dict.getCOSName(COSName.TYPE);
+            if (COSName.FONT.equals(type) || COSName.FONT_DESC.equals(type)) {
+                for (COSName key : FONT_STREAMS) {
+                    addStream(resourceStreams, dict.getDictionaryObject(key));
+                }
+            } else if (COSName.PAGE.equals(type)) {
+                COSBase content = dict.getDictionaryObject(COSName.CONTENTS);
+                if (content instanceof COSArray) {
+                    for (COSBase item : (COSArray) content) {
+                        addStream(contents, inline(item));
+                    }
+                } else {
+                    addStream(contents, content);
+                }
+            }
+            findProfiles(object);
+        }
+        resourceStreams.removeAll(contents);
+    }
+
+    // ICC profiles in [/ICCBased stream] arrays held in object; referenced
+    // dictionaries are left to their own turn in the object list
+    private void findProfiles(COSBase object) {
+        if (object instanceof COSArray) {
+            COSArray array = (COSArray) object;
+            if (array.size() == 2 && COSName.ICCBASED.equals(array.getObject(0))) {
+                addStream(resourceStreams, array.getObject(1));
+            }
+            for (COSBase item : array) {
+                findProfilesIn(item);
+            }
+        } else if (object instanceof COSDictionary) {
+            for (COSBase value : ((COSDictionary) object).getValues()) {
+                findProfilesIn(value);
+            }
+        }
+    }
+
+    private void findProfilesIn(COSBase value) {
+        if (indirectTarget(value) == null) findProfiles(inline(value));
+    }
+
+    private static void addStream(Set<COSBase> streams, COSBase value) {
+        if (value instanceof COSStream) streams.add(value);
+    }
+
+    private String hash(MessageDigest digest, COSDictionary object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(object instanceof COSStream ? 'S' : 'D');
+        writeDictionary(bytes, object, object instanceof COSStream ? 0 : -1);
+        digest.update(bytes.toByteArray());
+        if (object instanceof COSStream) {
+            try (InputStream in = ((COSStream) object).createRawInputStream()) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+        }
+        return Base64.getEncoder().encodeToString(digest.digest());
+    }
+
+    private void writeStream(OutputStream out, int number, COSStream stream) throws IOException {
+        byte[] data;
+        try (InputStream in = stream.createRawInputStream()) {
+            data = in.readAllBytes();
+        }
+        writeRawStream(out, number, stream, data);
+    }
+
+    private void writeRawStream(OutputStream out, int number, COSDictionary dict, byte[] data)
+            throws IOException {
+        out.write(ascii(number + " 0 obj\n"));
+        writeDictionary(out, dict, data.length);
+        out.write(ascii("\nstream\n"));
+        out.write(data);
+        out.write(ascii("\nendstream\nendobj\n"));
+    }
+
+    private void writeDirect(OutputStream out, COSBase value) throws IOException {
+        if (value instanceof COSDictionary) {
+            writeDictionary(out, (COSDictionary) value, -1);
+        } else {
+            writeValue(out, value);
+        }
+    }
+
+    /**
+     * @param length for a dictionary heading stream data, the length
+     *               written in place of its own Length; -1 for any other
+     *               dictionary
+     */
+    private void writeDictionary(OutputStream out, COSDictionary dict, long length) throws IOException {
+        out.write(COSWriter.DICT_OPEN);
+        for (Map.Entry<COSName, COSBase> entry : dict.entrySet()) {
+            if (entry.getValue() == null || (length >= 0 && COSName.LENGTH.equals(entry.getKey()))) continue;
+            entry.getKey().writePDF(out);
+            out.write(' ');
+            writeValue(out, entry.getValue());
+            out.write('\n');
+        }
+        if (length >= 0) {
+            out.write(ascii("/Length " + length));
+        }
+        out.write(COSWriter.DICT_CLOSE);
+    }
+
+    private void writeValue(OutputStream out, COSBase value) throws IOException {
+        COSBase indirect = indirectTarget(value);
+        if (indirect != null) {
+            Integer number = numbers.get(indirect);
+            out.write(ascii(number + " 0 R"));
+            return;
+        }
+        COSBase object = inline(value);
+        if (object instanceof COSDictionary) {
+            writeDictionary(out, (COSDictionary) object, -1);
+        } else if (object instanceof COSArray) {
+            out.write(COSWriter.ARRAY_OPEN);
+            boolean first = true;
+            for (COSBase item : (COSArray) object) {
+                if (!first) out.write(' ');
+                first = false;
+                writeValue(out, item == null ? COSNull.NULL : item);
+            }
+            out.write(COSWriter.ARRAY_CLOSE);
+        } else if (object instanceof COSString) {
+            COSWriter.writeString((COSString) object, out);
+        } else if (object instanceof COSName) {
+            ((COSName) object).writePDF(out);
+        } else if (object instanceof COSInteger) {
+            ((COSInteger) object).writePDF(out);
+        } else if (object instanceof COSFloat) {
+            ((COSFloat) object).writePDF(out);
+        } else if (object instanceof COSBoolean) {
+            ((COSBoolean) object).writePDF(out);
+        } else {
+            COSNull.NULL.writePDF(out);
+        }
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * PDDocument.save subsets the fonts that were loaded for subsetting
+     * before it writes anything; PDFBox 2.0 keeps that list to itself, so
+     * this writer has to reach it the same way
+     */
+    @SuppressWarnings("unchecked")
+    private static void subsetFonts(PDDocument document) throws IOException {
+        Set<PDFont> fonts;
+        try {
+            Field field = PDDocument.class.getDeclaredField("fontsToSubset");
+            field.setAccessible(true);
+            fonts = (Set<PDFont>) field.get(document);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            throw new IOException("Can't subset fonts before a compact save", e);
+        }
+        for (PDFont font : fonts) {
+            font.subset();
+        }
+        fonts.clear();
+    }
+}
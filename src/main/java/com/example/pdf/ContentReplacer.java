@@ -0,0 +1,825 @@
+package com.example.pdf;
+
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.cos.*;
+import org.apache.pdfbox.pdfparser.PDFStreamParser;
+import org.apache.pdfbox.pdfwriter.ContentStreamWriter;
+import org.apache.pdfbox.pdmodel.*;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.util.Matrix;
+
+import java.awt.geom.Point2D;
+import java.io.*;
+import java.util.*;
+
+/**
+ * Replaces a piece of text in a page's content streams.
+ *
+ * The page's operators are read one at a time with PDFStreamParser while
+ * the text and graphics state is tracked, so no token list is ever built.
+ * A first pass decodes every Tj, TJ, ' and " through its font and finds
+ * the whole-word occurrence of the old text nearest below the given
+ * height. A second pass copies only the stream holding it through a
+ * ContentStreamWriter, re-encodes the match in place (kerning inside the
+ * old text is dropped, kerning around it kept) and moves the text that
+ * follows on the same line by the change in width. The stream is then
+ * rewritten in place and handed to the saver as changed.
+ *
+ * When the text's own font can't encode the new string (embedded subsets
+ * rarely can), the new string is shown in a fallback from
+ * {@link FontResolver} between two Tf switches.
+ *
+ * A replacement that would push its line past the edge of its column is
+ * refused rather than drawn over the neighbouring column. The edge is the
+ * nearest line starting to the right of the edited one within a couple of
+ * lines above or below, else the page's right margin, taken to mirror the
+ * left one.
+ *
+ * Text is matched within a single show operator; text drawn inside form
+ * XObjects, or split across several operators, is not found. Only the
+ * stream holding the match is adjusted.
+ */
+public class ContentReplacer {
+
+    public enum Result {
+        REPLACED,
+        NOT_FOUND,
+        /** Found, but the new text doesn't fit in its column */
+        TOO_WIDE
+    }
+
+    private static final float LINE_TOLERANCE = 1f;
+
+    private final PDPage page;
+    private final FontResolver fonts;
+    private final DocumentSaver saver;
+    private final Map<COSName, PDFont> fontCache = new HashMap<>();
+
+    public ContentReplacer(PDPage page, FontResolver fonts, DocumentSaver saver) {
+        this.page = page;
+        this.fonts = fonts;
+        this.saver = saver;
+    }
+
+    /**
+     * Replace the occurrence of oldText nearest below nearY, measured from
+     * the top of the page like TextRun.getY (else the nearest above)
+     */
+    public Result replaceText(String oldText, String newText, float nearY) throws IOException {
+        if (oldText.isEmpty() || oldText.equals(newText)) return Result.NOT_FOUND;
+
+        List<COSStream> streams = contentStreams();
+        PDRectangle box = page.getCropBox();
+        List<Span> spans = new ArrayList<>();
+        Match match = find(streams, oldText, box.getUpperRightY() - nearY, spans);
+        if (match == null) return Result.NOT_FOUND;
+
+        PDFont font = match.state.font;
+        PDFont drawWith = FontResolver.canEncode(font, newText) ? font : fonts.resolve(font, newText);
+        float delta = (width(drawWith, drawWith.encode(newText), match.state) - match.oldWidth)
+                      * match.scale;
+        if (delta > 0 && !fits(spans, match, delta, box)) return Result.TOO_WIDE;
+
+        rewrite(streams.get(match.stream), match, newText, drawWith);
+        return Result.REPLACED;
+    }
+
+    private List<COSStream> contentStreams() {
+        List<COSStream> streams = new ArrayList<>();
+        COSBase contents = page.getCOSObject().getDictionaryObject(COSName.CONTENTS);
+        if (contents instanceof COSStream) {
+            streams.add((COSStream) contents);
+        } else if (contents instanceof COSArray) {
+            for (int i = 0; i < ((COSArray) contents).size(); i++) {
+                COSBase item = ((COSArray) contents).getObject(i);
+                if (item instanceof COSStream) streams.add((COSStream) item);
+            }
+        }
+        return streams;
+    }
+
+    // Pass 1: the best match and the text state at the start of its stream
+
+    private Match find(List<COSStream> streams, String oldText, float targetY,
+                       List<Span> spans) throws IOException {
+        Match best = null;
+        Cursor cursor = new Cursor();
+
+        for (int s = 0; s < streams.size(); s++) {
+            Cursor atStart = cursor.copy();
+            PDFStreamParser parser = new PDFStreamParser(read(streams.get(s)));
+            try {
+                List<COSBase> operands = new ArrayList<>();
+                int index = 0;
+                Object token;
+                while ((token = parser.parseNextToken()) != null) {
+                    if (!(token instanceof Operator)) {
+                        if (token instanceof COSBase) operands.add((COSBase) token);
+                        continue;
+                    }
+                    String op = ((Operator) token).getName();
+                    if (isShow(op)) {
+                        cursor.beforeShow(op, operands);
+                        Shown shown = decode(cursor, op, operands);
+                        if (shown != null) {
+                            Point2D.Float from = cursor.toDevice(0);
+                            float em = cursor.gs.fontSize * cursor.deviceScale();
+                            spans.add(new Span(from.x, cursor.toDevice(shown.width).x, from.y, em));
+                            Match found = search(shown, cursor, oldText, targetY);
+                            if (found != null && (best == null || found.closerThan(best, targetY))) {
+                                found.stream = s;
+                                found.op = index;
+                                found.start = atStart;
+                                found.state = cursor.gs.copy();
+                                found.scale = cursor.deviceScale();
+                                found.em = em;
+                                found.showEnd = spans.get(spans.size() - 1).x1;
+                                found.oldWidth = shown.x[found.lastGlyph - 1]
+                                                 + shown.advance[found.lastGlyph - 1]
+                                                 - shown.x[found.firstGlyph];
+                                best = found;
+                            }
+                            cursor.advance(shown.width);
+                        }
+                    } else {
+                        cursor.apply(op, operands);
+                    }
+                    operands.clear();
+                    index++;
+                }
+            } finally {
+                parser.close();
+            }
+        }
+        return best;
+    }
+
+    private Match search(Shown shown, Cursor cursor, String oldText, float targetY) {
+        Match best = null;
+        String text = shown.text.toString();
+        for (int at = text.indexOf(oldText); at >= 0; at = text.indexOf(oldText, at + 1)) {
+            int end = at + oldText.length();
+            // Whole words only, so "Java" doesn't hit "JavaScript"
+            if ((at > 0 && Character.isLetterOrDigit(text.charAt(at - 1)))
+                    || (end < text.length() && Character.isLetterOrDigit(text.charAt(end)))) {
+                continue;
+            }
+            int first = shown.charGlyph[at];
+            int last = shown.charGlyph[end - 1];
+            Point2D.Float origin = cursor.toDevice(shown.x[first]);
+            Match match = new Match(first, last + 1, origin.x, origin.y);
+            if (best == null || match.closerThan(best, targetY)) best = match;
+        }
+        return best;
+    }
+
+    /**
+     * Whether the match's line, grown by delta, still ends short of the
+     * next column or the right margin
+     */
+    private static boolean fits(List<Span> spans, Match match, float delta, PDRectangle box) {
+        List<Span> byX = new ArrayList<>(spans);
+        byX.sort(Comparator.comparingDouble(span -> span.x0));
+
+        // The line as copyShifted will move it: text on the baseline within a gap of its end
+        float gap = 3 * match.em;
+        float end = match.showEnd;
+        float left = Float.MAX_VALUE;
+        for (Span span : byX) {
+            left = Math.min(left, span.x0);
+            if (Math.abs(span.y - match.y) <= LINE_TOLERANCE
+                    && span.x0 >= end - LINE_TOLERANCE && span.x0 - end <= gap) {
+                end = Math.max(end, span.x1);
+            }
+        }
+
+        float edge = box.getUpperRightX() - Math.max(0, left - box.getLowerLeftX());
+        for (Span span : byX) {
+            if (span.x0 <= end + LINE_TOLERANCE || span.x0 >= edge) continue;
+            if (Math.abs(span.y - match.y) > 2.5f * Math.max(match.em, span.em)) continue;
+            if (startsLine(byX, span, gap)) {
+                edge = span.x0;
+                break;
+            }
+        }
+        // Keep half an em clear of whatever starts at the edge
+        return end + delta <= Math.max(end, edge - match.em / 2);
+    }
+
+    // Nothing on the span's baseline ends just before it
+    private static boolean startsLine(List<Span> byX, Span span, float gap) {
+        for (Span other : byX) {
+            if (other.x0 >= span.x0) break;
+            if (Math.abs(other.y - span.y) <= LINE_TOLERANCE && span.x0 - other.x1 <= gap) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Pass 2: copy the stream, rewriting the match and the rest of its line
+
+    private void rewrite(COSStream stream, Match match, String newText, PDFont drawWith)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ContentStreamWriter writer = new ContentStreamWriter(bytes);
+        Cursor cursor = match.start;
+        Line line = null;
+
+        PDFStreamParser parser = new PDFStreamParser(read(stream));
+        try {
+            List<COSBase> operands = new ArrayList<>();
+            int index = 0;
+            Object token;
+            while ((token = parser.parseNextToken()) != null) {
+                if (!(token instanceof Operator)) {
+                    if (token instanceof COSBase) operands.add((COSBase) token);
+                    continue;
+                }
+                Operator operator = (Operator) token;
+                String op = operator.getName();
+
+                if (index == match.op) {
+                    cursor.beforeShow(op, operands);
+                    Shown shown = decode(cursor, op, operands);
+                    line = replace(writer, cursor, shown, match, op, operands, newText, drawWith);
+                    cursor.advance(shown.width);
+                } else if (line != null && line.delta != 0) {
+                    copyShifted(writer, cursor, line, operator, operands);
+                } else {
+                    writer.writeTokens(operands);
+                    writer.writeToken(operator);
+                    cursor.apply(op, operands);
+                }
+                operands.clear();
+                index++;
+            }
+        } finally {
+            parser.close();
+        }
+
+        try (OutputStream out = saver.openContent(stream)) {
+            bytes.writeTo(out);
+        }
+        saver.markChanged(stream);
+        saver.markChanged(page);
+    }
+
+    private Line replace(ContentStreamWriter writer, Cursor cursor, Shown shown, Match match,
+                         String op, List<COSBase> operands, String newText, PDFont drawWith)
+            throws IOException {
+        GraphicsState gs = cursor.gs;
+        PDFont font = gs.font;
+        byte[] encoded = drawWith.encode(newText);
+        float newWidth = width(drawWith, encoded, gs);
+
+        // ' and " move to the next line before showing; keep that part
+        if (op.equals("\"")) {
+            writer.writeTokens(operands.get(0));
+            writer.writeToken(Operator.getOperator("Tw"));
+            writer.writeTokens(operands.get(1));
+            writer.writeToken(Operator.getOperator("Tc"));
+        }
+        if (op.equals("'") || op.equals("\"")) {
+            writer.writeToken(Operator.getOperator("T*"));
+        }
+
+        COSArray prefix = new COSArray();
+        COSArray suffix = new COSArray();
+        split(shown, match, prefix, suffix);
+
+        if (drawWith == font) {
+            COSArray array = new COSArray();
+            addAll(array, prefix);
+            array.add(new COSString(encoded));
+            addAll(array, suffix);
+            writeShow(writer, array);
+        } else {
+            COSName fallbackName = page.getResources().add(drawWith);
+            writeShow(writer, prefix);
+            writer.writeTokens(fallbackName, new COSFloat(gs.fontSize));
+            writer.writeToken(Operator.getOperator("Tf"));
+            writer.writeTokens(new COSString(encoded));
+            writer.writeToken(Operator.getOperator("Tj"));
+            writer.writeTokens(gs.fontName, new COSFloat(gs.fontSize));
+            writer.writeToken(Operator.getOperator("Tf"));
+            writeShow(writer, suffix);
+        }
+
+        float oldWidth = shown.x[match.lastGlyph - 1] + shown.advance[match.lastGlyph - 1]
+                         - shown.x[match.firstGlyph];
+        Line line = new Line();
+        line.y = match.y;
+        line.delta = (newWidth - oldWidth) * cursor.deviceScale();
+        line.end = cursor.toDevice(shown.width).x;
+        line.gap = 3 * gs.fontSize * cursor.deviceScale();
+        return line;
+    }
+
+    // Elements before and after the matched glyphs, cutting strings at glyph boundaries
+    private static void split(Shown shown, Match match, COSArray prefix, COSArray suffix) {
+        int firstElement = shown.element[match.firstGlyph];
+        int lastElement = shown.element[match.lastGlyph - 1];
+        for (int e = 0; e < shown.elements.size(); e++) {
+            COSBase element = shown.elements.get(e);
+            if (e < firstElement) {
+                prefix.add(element);
+            } else if (e > lastElement) {
+                suffix.add(element);
+            }
+        }
+        byte[] head = ((COSString) shown.elements.get(firstElement)).getBytes();
+        int cut = shown.byteStart[match.firstGlyph];
+        if (cut > 0) {
+            prefix.add(new COSString(Arrays.copyOfRange(head, 0, cut)));
+        }
+        byte[] tail = ((COSString) shown.elements.get(lastElement)).getBytes();
+        int resume = shown.byteEnd[match.lastGlyph - 1];
+        if (resume < tail.length) {
+            // Inserted ahead of the elements after the match
+            COSArray rest = new COSArray();
+            rest.add(new COSString(Arrays.copyOfRange(tail, resume, tail.length)));
+            addAll(rest, suffix);
+            suffix.clear();
+            addAll(suffix, rest);
+        }
+    }
+
+    private static byte[] read(COSStream stream) throws IOException {
+        try (InputStream in = stream.createInputStream()) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static void writeShow(ContentStreamWriter writer, COSArray array) throws IOException {
+        if (array.size() == 0) return;
+        if (array.size() == 1 && array.getObject(0) instanceof COSString) {
+            writer.writeTokens(array.getObject(0));
+            writer.writeToken(Operator.getOperator("Tj"));
+        } else {
+            writer.writeTokens(array);
+            writer.writeToken(Operator.getOperator("TJ"));
+        }
+    }
+
+    private static void addAll(COSArray to, COSArray from) {
+        for (int i = 0; i < from.size(); i++) {
+            to.add(from.get(i));
+        }
+    }
+
+    /**
+     * Copy one operator after the replacement, moving text that continues
+     * the edited line by the change in width. Relative moves (Td, TD, T*)
+     * build on the line matrix, so once the line matrix has been shifted
+     * the next move that leaves the line has to take the shift back out.
+     */
+    private void copyShifted(ContentStreamWriter writer, Cursor cursor, Line line,
+                             Operator operator, List<COSBase> operands) throws IOException {
+        String op = operator.getName();
+        switch (op) {
+            case "BT":
+                line.lineShifted = false;
+                break;
+            case "Tm": {
+                cursor.apply(op, operands);
+                boolean inLine = line.contains(cursor.toDevice(0));
+                if (inLine && operands.size() == 6) {
+                    float e = ((COSNumber) operands.get(4)).floatValue()
+                              + line.delta / cursor.gs.ctm.getScalingFactorX();
+                    operands.set(4, new COSFloat(e));
+                }
+                line.lineShifted = inLine;
+                writer.writeTokens(operands);
+                writer.writeToken(operator);
+                return;
+            }
+            case "Td":
+            case "TD":
+            case "T*":
+            case "'":
+            case "\"": {
+                if (operands.size() < (op.equals("Td") || op.equals("TD") ? 2 : 0)) break;
+                float scale = cursor.lineMatrix.getScalingFactorX() * cursor.gs.ctm.getScalingFactorX();
+                boolean wasShifted = line.lineShifted;
+                if (isShow(op)) {
+                    cursor.beforeShow(op, operands);
+                } else {
+                    cursor.apply(op, operands);
+                }
+                boolean inLine = line.contains(cursor.toDevice(0));
+                line.lineShifted = inLine;
+
+                float fix = inLine == wasShifted ? 0 : (inLine ? line.delta : -line.delta) / scale;
+                if (fix != 0) {
+                    writeMove(writer, cursor, op, operands, fix);
+                } else {
+                    writer.writeTokens(operands);
+                    writer.writeToken(operator);
+                }
+                if (isShow(op)) {
+                    Shown shown = decode(cursor, op, operands);
+                    if (shown != null) {
+                        line.extend(cursor, shown.width);
+                        cursor.advance(shown.width);
+                    }
+                }
+                return;
+            }
+            case "Tj":
+            case "TJ": {
+                cursor.beforeShow(op, operands);
+                Shown shown = decode(cursor, op, operands);
+                writer.writeTokens(operands);
+                writer.writeToken(operator);
+                if (shown != null) {
+                    line.extend(cursor, shown.width);
+                    cursor.advance(shown.width);
+                }
+                return;
+            }
+            default:
+                break;
+        }
+        writer.writeTokens(operands);
+        writer.writeToken(operator);
+        cursor.apply(op, operands);
+    }
+
+    // A line move, or the move part of ' and ", rewritten as Td with tx adjusted
+    private static void writeMove(ContentStreamWriter writer, Cursor cursor, String op,
+                                  List<COSBase> operands, float fix) throws IOException {
+        if (op.equals("Td") || op.equals("TD")) {
+            writer.writeTokens(new COSFloat(((COSNumber) operands.get(0)).floatValue() + fix),
+                               operands.get(1));
+            writer.writeToken(Operator.getOperator(op));
+            return;
+        }
+        if (op.equals("\"")) {
+            writer.writeTokens(operands.get(0));
+            writer.writeToken(Operator.getOperator("Tw"));
+            writer.writeTokens(operands.get(1));
+            writer.writeToken(Operator.getOperator("Tc"));
+        }
+        writer.writeTokens(new COSFloat(fix), new COSFloat(-cursor.gs.leading));
+        writer.writeToken(Operator.getOperator("Td"));
+        if (!op.equals("T*")) {
+            writer.writeTokens(operands.get(operands.size() - 1));
+            writer.writeToken(Operator.getOperator("Tj"));
+        }
+    }
+
+    private static boolean isShow(String op) {
+        return op.equals("Tj") || op.equals("TJ") || op.equals("'") || op.equals("\"");
+    }
+
+    /**
+     * Glyphs of a show operator with their positions in text space, or
+     * null when there is no font or nothing to show
+     */
+    private Shown decode(Cursor cursor, String op, List<COSBase> operands) throws IOException {
+        PDFont font = cursor.gs.font;
+        if (font == null || operands.isEmpty()) return null;
+
+        List<COSBase> elements = new ArrayList<>();
+        COSBase last = operands.get(operands.size() - 1);
+        if (op.equals("TJ")) {
+            if (!(last instanceof COSArray)) return null;
+            for (int i = 0; i < ((COSArray) last).size(); i++) {
+                elements.add(((COSArray) last).getObject(i));
+            }
+        } else if (last instanceof COSString) {
+            elements.add(last);
+        } else {
+            return null;
+        }
+
+        GraphicsState gs = cursor.gs;
+        float scale = font.getFontMatrix().getScaleX();
+        Shown shown = new Shown(elements);
+        float x = 0;
+        for (int e = 0; e < elements.size(); e++) {
+            COSBase element = elements.get(e);
+            if (element instanceof COSNumber) {
+                x -= ((COSNumber) element).floatValue() / 1000 * gs.fontSize * gs.horizontalScaling;
+                continue;
+            }
+            if (!(element instanceof COSString)) continue;
+
+            byte[] bytes = ((COSString) element).getBytes();
+            InputStream in = new ByteArrayInputStream(bytes);
+            while (in.available() > 0) {
+                int start = bytes.length - in.available();
+                int code = font.readCode(in);
+                int end = bytes.length - in.available();
+                float advance = glyphAdvance(font, code, end - start, scale, gs);
+
+                String unicode = font.toUnicode(code);
+                if (unicode == null || unicode.isEmpty()) unicode = "\uFFFD";
+                shown.add(e, start, end, x, advance, unicode);
+                x += advance;
+            }
+        }
+        shown.width = x;
+        return shown;
+    }
+
+    private static float width(PDFont font, byte[] bytes, GraphicsState gs) throws IOException {
+        float scale = font.getFontMatrix().getScaleX();
+        InputStream in = new ByteArrayInputStream(bytes);
+        float width = 0;
+        while (in.available() > 0) {
+            int before = in.available();
+            int code = font.readCode(in);
+            width += glyphAdvance(font, code, before - in.available(), scale, gs);
+        }
+        return width;
+    }
+
+    private static float glyphAdvance(PDFont font, int code, int length, float scale,
+                                      GraphicsState gs) throws IOException {
+        // Word spacing only applies to a single-byte code 32
+        float wordSpacing = code == 32 && length == 1 ? gs.wordSpacing : 0;
+        return (font.getWidth(code) * scale * gs.fontSize + gs.charSpacing + wordSpacing)
+               * gs.horizontalScaling;
+    }
+
+    private PDFont font(COSName name) throws IOException {
+        if (!fontCache.containsKey(name)) {
+            PDResources resources = page.getResources();
+            fontCache.put(name, resources != null ? resources.getFont(name) : null);
+        }
+        return fontCache.get(name);
+    }
+
+    /**
+     * Graphics and text state that survives BT/ET and is saved by q/Q
+     */
+    private static class GraphicsState {
+        Matrix ctm = new Matrix();
+        COSName fontName;
+        PDFont font;
+        float fontSize;
+        float charSpacing;
+        float wordSpacing;
+        float horizontalScaling = 1;
+        float leading;
+        float rise;
+
+        GraphicsState copy() {
+            GraphicsState copy = new GraphicsState();
+            copy.ctm = ctm.clone();
+            copy.fontName = fontName;
+            copy.font = font;
+            copy.fontSize = fontSize;
+            copy.charSpacing = charSpacing;
+            copy.wordSpacing = wordSpacing;
+            copy.horizontalScaling = horizontalScaling;
+            copy.leading = leading;
+            copy.rise = rise;
+            return copy;
+        }
+    }
+
+    /**
+     * Operator-by-operator state: the graphics state stack plus the text
+     * and line matrices
+     */
+    private class Cursor {
+        GraphicsState gs = new GraphicsState();
+        Deque<GraphicsState> saved = new ArrayDeque<>();
+        Matrix textMatrix = new Matrix();
+        Matrix lineMatrix = new Matrix();
+
+        Cursor copy() {
+            Cursor copy = new Cursor();
+            copy.gs = gs.copy();
+            for (GraphicsState state : saved) {
+                copy.saved.addLast(state.copy());
+            }
+            copy.textMatrix = textMatrix.clone();
+            copy.lineMatrix = lineMatrix.clone();
+            return copy;
+        }
+
+        void apply(String op, List<COSBase> operands) throws IOException {
+            switch (op) {
+                case "q":
+                    saved.push(gs.copy());
+                    break;
+                case "Q":
+                    if (!saved.isEmpty()) gs = saved.pop();
+                    break;
+                case "cm":
+                    if (operands.size() == 6) gs.ctm = matrix(operands).multiply(gs.ctm);
+                    break;
+                case "BT":
+                    textMatrix = new Matrix();
+                    lineMatrix = new Matrix();
+                    break;
+                case "Tf":
+                    if (operands.size() == 2 && operands.get(0) instanceof COSName) {
+                        gs.fontName = (COSName) operands.get(0);
+                        gs.font = font(gs.fontName);
+                        gs.fontSize = number(operands, 1);
+                    }
+                    break;
+                case "Tc":
+                    gs.charSpacing = number(operands, 0);
+                    break;
+                case "Tw":
+                    gs.wordSpacing = number(operands, 0);
+                    break;
+                case "Tz":
+                    gs.horizontalScaling = number(operands, 0) / 100;
+                    break;
+                case "TL":
+                    gs.leading = number(operands, 0);
+                    break;
+                case "Ts":
+                    gs.rise = number(operands, 0);
+                    break;
+                case "Td":
+                    moveLine(number(operands, 0), number(operands, 1));
+                    break;
+                case "TD":
+                    gs.leading = -number(operands, 1);
+                    moveLine(number(operands, 0), number(operands, 1));
+                    break;
+                case "T*":
+                    moveLine(0, -gs.leading);
+                    break;
+                case "Tm":
+                    if (operands.size() == 6) {
+                        lineMatrix = matrix(operands);
+                        textMatrix = lineMatrix.clone();
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        // The state changes a show operator makes before drawing
+        void beforeShow(String op, List<COSBase> operands) {
+            if (op.equals("\"") && operands.size() == 3) {
+                gs.wordSpacing = number(operands, 0);
+                gs.charSpacing = number(operands, 1);
+            }
+            if (op.equals("'") || op.equals("\"")) {
+                moveLine(0, -gs.leading);
+            }
+        }
+
+        void moveLine(float tx, float ty) {
+            lineMatrix = Matrix.getTranslateInstance(tx, ty).multiply(lineMatrix);
+            textMatrix = lineMatrix.clone();
+        }
+
+        void advance(float width) {
+            textMatrix = Matrix.getTranslateInstance(width, 0).multiply(textMatrix);
+        }
+
+        Point2D.Float toDevice(float x) {
+            return textMatrix.multiply(gs.ctm).transformPoint(x, gs.rise);
+        }
+
+        float deviceScale() {
+            return textMatrix.multiply(gs.ctm).getScalingFactorX();
+        }
+    }
+
+    private static Matrix matrix(List<COSBase> operands) {
+        return new Matrix(number(operands, 0), number(operands, 1), number(operands, 2),
+                          number(operands, 3), number(operands, 4), number(operands, 5));
+    }
+
+    private static float number(List<COSBase> operands, int index) {
+        if (index < operands.size() && operands.get(index) instanceof COSNumber) {
+            return ((COSNumber) operands.get(index)).floatValue();
+        }
+        return 0;
+    }
+
+    /**
+     * Decoded glyphs of one show operator
+     */
+    private static class Shown {
+        final List<COSBase> elements;
+        final StringBuilder text = new StringBuilder();
+        int[] charGlyph = new int[16];
+        int[] element = new int[16];
+        int[] byteStart = new int[16];
+        int[] byteEnd = new int[16];
+        float[] x = new float[16];
+        float[] advance = new float[16];
+        int count;
+        float width;
+
+        Shown(List<COSBase> elements) {
+            this.elements = elements;
+        }
+
+        void add(int elementIndex, int start, int end, float glyphX, float glyphAdvance,
+                 String unicode) {
+            if (count == x.length) {
+                element = Arrays.copyOf(element, count * 2);
+                byteStart = Arrays.copyOf(byteStart, count * 2);
+                byteEnd = Arrays.copyOf(byteEnd, count * 2);
+                x = Arrays.copyOf(x, count * 2);
+                advance = Arrays.copyOf(advance, count * 2);
+            }
+            element[count] = elementIndex;
+            byteStart[count] = start;
+            byteEnd[count] = end;
+            x[count] = glyphX;
+            advance[count] = glyphAdvance;
+
+            for (int i = 0; i < unicode.length(); i++) {
+                if (text.length() == charGlyph.length) {
+                    charGlyph = Arrays.copyOf(charGlyph, charGlyph.length * 2);
+                }
+                charGlyph[text.length()] = count;
+                text.append(unicode.charAt(i));
+            }
+            count++;
+        }
+    }
+
+    /**
+     * Where the old text was found: glyph range, device position, and the
+     * state at the start of its content stream
+     */
+    private static class Match {
+        final int firstGlyph;
+        final int lastGlyph;
+        final float x;
+        final float y;
+        int stream;
+        int op;
+        Cursor start;
+        // State at the show operator, for sizing the replacement before rewriting
+        GraphicsState state;
+        float scale;
+        float em;
+        float showEnd;
+        float oldWidth;
+
+        Match(int firstGlyph, int lastGlyph, float x, float y) {
+            this.firstGlyph = firstGlyph;
+            this.lastGlyph = lastGlyph;
+            this.x = x;
+            this.y = y;
+        }
+
+        // Below the target wins over above; then the smaller distance
+        boolean closerThan(Match other, float targetY) {
+            boolean below = y <= targetY + LINE_TOLERANCE;
+            boolean otherBelow = other.y <= targetY + LINE_TOLERANCE;
+            if (below != otherBelow) return below;
+            return Math.abs(y - targetY) < Math.abs(other.y - targetY);
+        }
+    }
+
+    /**
+     * Device-space extent of one show operator
+     */
+    private static class Span {
+        final float x0;
+        final float x1;
+        final float y;
+        final float em;
+
+        Span(float x0, float x1, float y, float em) {
+            this.x0 = x0;
+            this.x1 = x1;
+            this.y = y;
+            this.em = em;
+        }
+    }
+
+    /**
+     * The edited line: text starting on its baseline no further than a
+     * few ems past the end of what came before continues it
+     */
+    private static class Line {
+        float y;
+        float end;
+        float gap;
+        float delta;
+        boolean lineShifted;
+
+        boolean contains(Point2D.Float point) {
+            return Math.abs(point.y - y) <= LINE_TOLERANCE
+                && point.x >= end - LINE_TOLERANCE && point.x - end <= gap;
+        }
+
+        void extend(Cursor cursor, float width) {
+            Point2D.Float from = cursor.toDevice(0);
+            if (contains(from)) {
+                end = Math.max(end, cursor.toDevice(width).x);
+            }
+        }
+    }
+}
@@ -0,0 +1,877 @@
+package com.example.pdf;
+
+import org.apache.pdfbox.contentstream.PDFGraphicsStreamEngine;
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.cos.*;
+import org.apache.pdfbox.pdfparser.PDFStreamParser;
+import org.apache.pdfbox.pdfwriter.ContentStreamWriter;
+import org.apache.pdfbox.pdmodel.*;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.graphics.color.*;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImage;
+import org.apache.pdfbox.pdmodel.graphics.state.PDGraphicsState;
+import org.apache.pdfbox.pdmodel.graphics.state.PDTextState;
+import org.apache.pdfbox.util.Matrix;
+import org.apache.pdfbox.util.Vector;
+
+import java.awt.geom.*;
+import java.io.*;
+import java.util.*;
+
+/**
+ * Moves a page's existing content down to make room for inserted text.
+ *
+ * The page is read once, when the shifter is created, and cut into units
+ * that can move on their own: text objects (BT..ET), painted paths,
+ * images, shadings and form XObjects. A q..Q group that clips to less
+ * than the whole page moves as one unit together with its clip. Units are
+ * kept sorted by their top edge. Moving everything below a line moves a
+ * suffix of that order and never reorders it, so each {@link #shift} is a
+ * binary search plus a range update on a Fenwick tree of offsets, and
+ * several insertions on one page cost O(log n) each instead of a rescan
+ * of the content.
+ *
+ * On a page laid out in columns, {@link #shiftColumn} moves only the
+ * column being inserted into. That column is the run of content just below
+ * the line, within the shift amount, whose horizontal extents overlap or
+ * lie within a gutter of each other; everything further down overlapping
+ * that run moves with it. Content past a wider gap belongs to another
+ * column and stays.
+ * Such a shift updates each unit it moves. Once content beside it has
+ * stayed behind, tops are no longer in order, and later shifts check every
+ * unit that may have moved below their line.
+ *
+ * Nothing is written until {@link #flush}. Each moved unit is then
+ * wrapped in q, a translating cm, and Q; text state it sets (Tf, Tc,
+ * colours ...) is repeated after the Q so later content still sees it.
+ * Units pushed past the page's bottom margin go to a new page inserted
+ * after this one, which shares this page's resources.
+ *
+ * Coordinates are PDF user space (y grows upward), as used by
+ * {@link TextBlockWriter}. Content drawn before a page-level clip, or
+ * spread over two content streams, stays where it is.
+ */
+public class ContentShifter {
+
+    // Largest margin assumed at the top and bottom of the page
+    private static final float MAX_MARGIN = 72;
+    private static final float MIN_TOP_MARGIN = 36;
+    // Narrowest gap between two columns
+    private static final float GUTTER = 12;
+
+    private static final Set<String> PATH_OPS = new HashSet<>(
+        Arrays.asList("m", "l", "c", "v", "y", "h", "re"));
+    private static final Set<String> PAINT_OPS = new HashSet<>(
+        Arrays.asList("S", "s", "f", "F", "f*", "B", "B*", "b", "b*", "n"));
+    // Operators inside a text object whose effect outlives ET
+    private static final Set<String> STATE_OPS = new HashSet<>(Arrays.asList(
+        "Tf", "Tc", "Tw", "Tz", "TL", "Ts", "Tr", "g", "G", "rg", "RG", "k", "K",
+        "cs", "CS", "sc", "SC", "scn", "SCN", "gs", "w", "J", "j", "M", "d", "ri", "i"));
+
+    private final PDDocument document;
+    private final PDPage page;
+    private final DocumentSaver saver;
+    private final List<COSStream> streams;
+    // Index of each stream's first operator in page order
+    private final int[] streamStart;
+
+    // Movable units by descending top edge, and their accumulated offsets
+    private final Unit[] units;
+    private final Offsets offsets;
+    private final float contentTop;
+    private final float contentBottom;
+    // Total shifted so far, which no unit has moved further than
+    private float maxOffset;
+    // Whether current tops are still in descending order
+    private boolean ordered = true;
+    private boolean flushed;
+
+    public ContentShifter(PDDocument document, PDPage page, DocumentSaver saver) throws IOException {
+        this.document = document;
+        this.page = page;
+        this.saver = saver;
+        this.streams = contentStreams(page);
+
+        this.streamStart = new int[streams.size() + 1];
+        for (int s = 0; s < streams.size(); s++) {
+            streamStart[s + 1] = streamStart[s] + countOperators(streams.get(s));
+        }
+
+        Indexer indexer = new Indexer(page);
+        indexer.processPage(page);
+        if (indexer.operators != streamStart[streams.size()]) {
+            // The page's streams didn't split the way the engine read them
+            throw new IOException("Content streams of page can't be indexed");
+        }
+
+        List<Unit> movable = new ArrayList<>();
+        for (Unit unit : indexer.finish()) {
+            if (unit.movable && unit.top >= unit.bottom && unit.invertible()) {
+                movable.add(unit);
+            }
+        }
+        movable.sort((a, b) -> Float.compare(b.top, a.top));
+        this.units = movable.toArray(new Unit[0]);
+        this.offsets = new Offsets(units.length);
+        this.contentTop = indexer.pageTop;
+        this.contentBottom = indexer.pageBottom;
+    }
+
+    /**
+     * Move everything whose top edge is below fromY down by amount
+     *
+     * @return the number of units moved
+     */
+    public int shift(float fromY, float amount) {
+        checkOpen();
+        if (!ordered) {
+            return shiftWithin(fromY, amount, Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY);
+        }
+        // First unit whose current top is below fromY
+        int low = 0;
+        int high = units.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (units[mid].top - offsets.at(mid) < fromY) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        if (low < units.length && amount != 0) {
+            offsets.addFrom(low, amount);
+        }
+        maxOffset += Math.max(0, amount);
+        return units.length - low;
+    }
+
+    /**
+     * Move the content below fromY in the column holding x down by amount,
+     * leaving other columns where they are
+     *
+     * @return the number of units moved
+     */
+    public int shiftColumn(float fromY, float x, float amount) {
+        checkOpen();
+        // The column is found from the content the shift displaces, so a
+        // figure further down bridging the gutter doesn't join two columns
+        List<float[]> extents = new ArrayList<>();
+        List<float[]> below = new ArrayList<>();
+        for (int i = firstBelow(fromY + maxOffset); i < units.length; i++) {
+            float top = units[i].top - offsets.at(i);
+            if (top >= fromY) continue;
+            float[] extent = {units[i].left, units[i].right};
+            below.add(extent);
+            if (top >= fromY - Math.abs(amount)) extents.add(extent);
+        }
+        if (extents.isEmpty()) extents = below;
+        extents.sort((a, b) -> Float.compare(a[0], b[0]));
+
+        // Merge extents into runs split by gutters, until one holds x
+        float left = Float.NaN;
+        float right = Float.NaN;
+        for (float[] extent : extents) {
+            if (!Float.isNaN(left) && extent[0] - right <= GUTTER) {
+                right = Math.max(right, extent[1]);
+                continue;
+            }
+            if (!Float.isNaN(left) && x <= right + GUTTER) break;
+            left = extent[0];
+            right = extent[1];
+        }
+        if (Float.isNaN(left) || x < left - GUTTER || x > right + GUTTER) {
+            return 0;
+        }
+        return shiftWithin(fromY, amount, left, right);
+    }
+
+    // Point updates for every unit below fromY overlapping [left, right]
+    private int shiftWithin(float fromY, float amount, float left, float right) {
+        int moved = 0;
+        for (int i = firstBelow(fromY + maxOffset); i < units.length; i++) {
+            Unit unit = units[i];
+            if (unit.top - offsets.at(i) >= fromY) continue;
+            if (unit.right < left || unit.left > right) {
+                ordered = false;
+                continue;
+            }
+            if (amount != 0) {
+                offsets.addFrom(i, amount);
+                offsets.addFrom(i + 1, -amount);
+            }
+            moved++;
+        }
+        maxOffset += Math.max(0, amount);
+        return moved;
+    }
+
+    // First unit whose original top is below y
+    private int firstBelow(float y) {
+        int low = 0;
+        int high = units.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (units[mid].top < y) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    private void checkOpen() {
+        if (flushed) {
+            throw new IllegalStateException("Shifter was already flushed");
+        }
+    }
+
+    /**
+     * Rewrite the page's content streams with every pending shift applied
+     *
+     * @return the page overflowing content was moved to, or null
+     */
+    public PDPage flush() throws IOException {
+        if (flushed) return null;
+        flushed = true;
+
+        PDRectangle box = page.getCropBox();
+        float bottomLimit = box.getLowerLeftY()
+            + clamp(contentBottom - box.getLowerLeftY(), 0, MAX_MARGIN);
+        float topLimit = box.getUpperRightY()
+            - clamp(box.getUpperRightY() - contentTop, MIN_TOP_MARGIN, MAX_MARGIN);
+
+        List<Unit> overflow = new ArrayList<>();
+        float overflowTop = Float.NEGATIVE_INFINITY;
+        Map<Integer, TreeMap<Integer, Unit>> byStream = new HashMap<>();
+        for (int i = 0; i < units.length; i++) {
+            Unit unit = units[i];
+            float offset = offsets.at(i);
+            if (offset == 0) continue;
+            unit.dy = -offset;
+            if (unit.bottom - offset < bottomLimit) {
+                overflow.add(unit);
+                overflowTop = Math.max(overflowTop, unit.top - offset);
+            }
+            int s = streamOf(unit.first);
+            byStream.computeIfAbsent(s, k -> new TreeMap<>()).put(unit.first - streamStart[s], unit);
+        }
+        // Overflow keeps its layout, lifted so its top lands at the top margin
+        for (Unit unit : overflow) {
+            unit.overflow = true;
+            unit.dy += topLimit - overflowTop;
+        }
+        if (byStream.isEmpty()) return null;
+
+        ByteArrayOutputStream moved = new ByteArrayOutputStream();
+        ContentStreamWriter overflowWriter = new ContentStreamWriter(moved);
+        PDPage overflowPage = overflow.isEmpty() ? null : newPage();
+
+        for (Map.Entry<Integer, TreeMap<Integer, Unit>> entry : new TreeMap<>(byStream).entrySet()) {
+            COSStream stream = streams.get(entry.getKey());
+            rewrite(stream, entry.getValue(), overflowWriter, overflowPage);
+            saver.markChanged(stream);
+        }
+        saver.markChanged(page);
+
+        if (overflowPage != null) {
+            COSStream contents = document.getDocument().createCOSStream();
+            try (OutputStream out = saver.openContent(contents)) {
+                moved.writeTo(out);
+            }
+            overflowPage.getCOSObject().setItem(COSName.CONTENTS, contents);
+            saver.markChanged(overflowPage);
+        }
+        return overflowPage;
+    }
+
+    public int getUnitCount() {
+        return units.length;
+    }
+
+    private void rewrite(COSStream stream, TreeMap<Integer, Unit> starts,
+                         ContentStreamWriter overflowWriter, PDPage overflowPage) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ContentStreamWriter writer = new ContentStreamWriter(bytes);
+
+        Unit active = null;
+        int last = -1;
+        ContentStreamWriter target = writer;
+        List<List<Object>> replay = new ArrayList<>();
+
+        PDFStreamParser parser = new PDFStreamParser(read(stream));
+        try {
+            List<COSBase> operands = new ArrayList<>();
+            int index = 0;
+            Object token;
+            while ((token = parser.parseNextToken()) != null) {
+                if (!(token instanceof Operator)) {
+                    if (token instanceof COSBase) operands.add((COSBase) token);
+                    continue;
+                }
+                Operator operator = (Operator) token;
+
+                if (active == null && starts.containsKey(index)) {
+                    active = starts.get(index);
+                    last = active.last - (active.first - index);
+                    if (active.overflow) {
+                        target = overflowWriter;
+                        writePrelude(overflowWriter, active, overflowPage);
+                    } else {
+                        target = writer;
+                        Point2D delta = active.userDelta();
+                        writer.writeToken(Operator.getOperator("q"));
+                        writer.writeTokens(COSInteger.ONE, COSInteger.ZERO, COSInteger.ZERO,
+                                           COSInteger.ONE, new COSFloat((float) delta.getX()),
+                                           new COSFloat((float) delta.getY()));
+                        writer.writeToken(Operator.getOperator("cm"));
+                    }
+                }
+
+                if (active == null) {
+                    writer.writeTokens(operands);
+                    writer.writeToken(operator);
+                } else {
+                    target.writeTokens(operands);
+                    target.writeToken(operator);
+                    if (active.kind == Kind.TEXT && STATE_OPS.contains(operator.getName())) {
+                        List<Object> op = new ArrayList<>(operands);
+                        op.add(operator);
+                        replay.add(op);
+                    }
+                    if (index == last) {
+                        target.writeToken(Operator.getOperator("Q"));
+                        for (List<Object> op : replay) {
+                            writer.writeTokens(op.subList(0, op.size() - 1));
+                            writer.writeToken((Operator) op.get(op.size() - 1));
+                        }
+                        replay.clear();
+                        active = null;
+                        target = writer;
+                    }
+                }
+                operands.clear();
+                index++;
+            }
+        } finally {
+            parser.close();
+        }
+
+        try (OutputStream out = saver.openContent(stream)) {
+            bytes.writeTo(out);
+        }
+    }
+
+    /**
+     * Recreate the state a unit was drawn in, on a page that starts from
+     * the default state: its transformation (moved), line style, colours
+     * and text state
+     */
+    private void writePrelude(ContentStreamWriter writer, Unit unit, PDPage target) throws IOException {
+        PDGraphicsState gs = unit.state;
+        Matrix ctm = gs.getCurrentTransformationMatrix().multiply(
+            Matrix.getTranslateInstance(0, unit.dy));
+
+        writer.writeToken(Operator.getOperator("q"));
+        writer.writeTokens(number(ctm.getScaleX()), number(ctm.getShearY()),
+                           number(ctm.getShearX()), number(ctm.getScaleY()),
+                           number(ctm.getTranslateX()), number(ctm.getTranslateY()));
+        writer.writeToken(Operator.getOperator("cm"));
+
+        writer.writeTokens(number(gs.getLineWidth()));
+        writer.writeToken(Operator.getOperator("w"));
+        writer.writeTokens(COSInteger.get(gs.getLineCap()));
+        writer.writeToken(Operator.getOperator("J"));
+        writer.writeTokens(COSInteger.get(gs.getLineJoin()));
+        writer.writeToken(Operator.getOperator("j"));
+        if (gs.getLineDashPattern() != null && gs.getLineDashPattern().getDashArray().length > 0) {
+            COSArray dashes = new COSArray();
+            for (float dash : gs.getLineDashPattern().getDashArray()) {
+                dashes.add(number(dash));
+            }
+            writer.writeTokens(dashes, COSInteger.get(gs.getLineDashPattern().getPhase()));
+            writer.writeToken(Operator.getOperator("d"));
+        }
+        writeColor(writer, gs.getStrokingColor(), gs.getStrokingColorSpace(), true);
+        writeColor(writer, gs.getNonStrokingColor(), gs.getNonStrokingColorSpace(), false);
+
+        PDTextState text = gs.getTextState();
+        if (text.getFont() != null) {
+            writer.writeTokens(fontName(target, text.getFont()), number(text.getFontSize()));
+            writer.writeToken(Operator.getOperator("Tf"));
+        }
+        writer.writeTokens(number(text.getCharacterSpacing()));
+        writer.writeToken(Operator.getOperator("Tc"));
+        writer.writeTokens(number(text.getWordSpacing()));
+        writer.writeToken(Operator.getOperator("Tw"));
+        writer.writeTokens(number(text.getHorizontalScaling()));
+        writer.writeToken(Operator.getOperator("Tz"));
+        writer.writeTokens(number(text.getLeading()));
+        writer.writeToken(Operator.getOperator("TL"));
+        writer.writeTokens(number(text.getRise()));
+        writer.writeToken(Operator.getOperator("Ts"));
+        writer.writeTokens(COSInteger.get(text.getRenderingMode().intValue()));
+        writer.writeToken(Operator.getOperator("Tr"));
+    }
+
+    // Device colours as they are; anything else as its RGB equivalent when it has one
+    private static void writeColor(ContentStreamWriter writer, PDColor color, PDColorSpace space,
+                                   boolean stroking) throws IOException {
+        if (color == null || space == null) return;
+        float[] components;
+        String op;
+        try {
+            if (space instanceof PDDeviceGray) {
+                components = color.getComponents();
+                op = "g";
+            } else if (space instanceof PDDeviceCMYK) {
+                components = color.getComponents();
+                op = "k";
+            } else {
+                components = space instanceof PDDeviceRGB ? color.getComponents()
+                                                          : space.toRGB(color.getComponents());
+                op = "rg";
+            }
+        } catch (IOException | RuntimeException e) {
+            // Patterns and the like have no single colour
+            return;
+        }
+        for (float component : components) {
+            writer.writeTokens(number(component));
+        }
+        writer.writeToken(Operator.getOperator(stroking ? op.toUpperCase() : op));
+    }
+
+    private static COSName fontName(PDPage target, PDFont font) throws IOException {
+        PDResources resources = target.getResources();
+        for (COSName name : resources.getFontNames()) {
+            PDFont candidate = resources.getFont(name);
+            if (candidate != null && candidate.getCOSObject() == font.getCOSObject()) {
+                return name;
+            }
+        }
+        return resources.add(font);
+    }
+
+    private PDPage newPage() {
+        PDPage overflowPage = new PDPage(page.getMediaBox());
+        overflowPage.setCropBox(page.getCropBox());
+        overflowPage.setRotation(page.getRotation());
+        if (page.getResources() == null) {
+            page.setResources(new PDResources());
+        }
+        // Shared, so every name the moved content uses resolves the same way
+        overflowPage.setResources(page.getResources());
+        document.getPages().insertAfter(overflowPage, page);
+        return overflowPage;
+    }
+
+    private int streamOf(int operator) {
+        int s = Arrays.binarySearch(streamStart, operator);
+        if (s < 0) return -s - 2;
+        // Skip empty streams starting at the same operator
+        while (s + 1 < streams.size() && streamStart[s + 1] == operator) s++;
+        return s;
+    }
+
+    private static List<COSStream> contentStreams(PDPage page) {
+        List<COSStream> streams = new ArrayList<>();
+        COSBase contents = page.getCOSObject().getDictionaryObject(COSName.CONTENTS);
+        if (contents instanceof COSStream) {
+            streams.add((COSStream) contents);
+        } else if (contents instanceof COSArray) {
+            for (int i = 0; i < ((COSArray) contents).size(); i++) {
+                COSBase item = ((COSArray) contents).getObject(i);
+                if (item instanceof COSStream) streams.add((COSStream) item);
+            }
+        }
+        return streams;
+    }
+
+    private static int countOperators(COSStream stream) throws IOException {
+        PDFStreamParser parser = new PDFStreamParser(read(stream));
+        try {
+            int count = 0;
+            Object token;
+            while ((token = parser.parseNextToken()) != null) {
+                if (token instanceof Operator) count++;
+            }
+            return count;
+        } finally {
+            parser.close();
+        }
+    }
+
+    private static byte[] read(COSStream stream) throws IOException {
+        try (InputStream in = stream.createInputStream()) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static COSFloat number(float value) {
+        return new COSFloat(value);
+    }
+
+    private static float clamp(float value, float min, float max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private enum Kind { TEXT, PATH, SINGLE, GROUP }
+
+    /**
+     * A run of operators that moves as a whole, by first and last operator
+     * in page order
+     */
+    private static class Unit {
+        final Kind kind;
+        final int first;
+        int last;
+        final PDGraphicsState state;
+        float top = Float.NEGATIVE_INFINITY;
+        float bottom = Float.POSITIVE_INFINITY;
+        float left = Float.POSITIVE_INFINITY;
+        float right = Float.NEGATIVE_INFINITY;
+        boolean movable = true;
+        boolean clipped;
+        List<Unit> children;
+        // Set by flush
+        float dy;
+        boolean overflow;
+
+        Unit(Kind kind, int first, PDGraphicsState state) {
+            this.kind = kind;
+            this.first = first;
+            this.state = state;
+            if (kind == Kind.GROUP) children = new ArrayList<>();
+        }
+
+        void include(Unit other) {
+            include(other.left, other.right, other.bottom, other.top);
+        }
+
+        void include(float minX, float maxX, float low, float high) {
+            left = Math.min(left, minX);
+            right = Math.max(right, maxX);
+            bottom = Math.min(bottom, low);
+            top = Math.max(top, high);
+        }
+
+        boolean invertible() {
+            try {
+                state.getCurrentTransformationMatrix().createAffineTransform().createInverse();
+                return true;
+            } catch (NoninvertibleTransformException e) {
+                return false;
+            }
+        }
+
+        // The page-space move expressed in the unit's own user space
+        Point2D userDelta() {
+            try {
+                AffineTransform inverse =
+                    state.getCurrentTransformationMatrix().createAffineTransform().createInverse();
+                return inverse.deltaTransform(new Point2D.Float(0, dy), null);
+            } catch (NoninvertibleTransformException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * Fenwick tree over the sorted units; adding to a suffix and reading
+     * one position's total are both O(log n)
+     */
+    private static class Offsets {
+        private final float[] tree;
+
+        Offsets(int size) {
+            tree = new float[size + 1];
+        }
+
+        void addFrom(int index, float amount) {
+            for (int i = index + 1; i < tree.length; i += i & -i) {
+                tree[i] += amount;
+            }
+        }
+
+        float at(int index) {
+            float sum = 0;
+            for (int i = index + 1; i > 0; i -= i & -i) {
+                sum += tree[i];
+            }
+            return sum;
+        }
+    }
+
+    /**
+     * Splits the page into units while the engine tracks the graphics
+     * state. Only top-level operators start or end units; whatever a form
+     * XObject draws counts towards the unit that drew the form.
+     */
+    private class Indexer extends PDFGraphicsStreamEngine {
+        int operators;
+        float pageTop = Float.NEGATIVE_INFINITY;
+        float pageBottom = Float.POSITIVE_INFINITY;
+
+        private final List<Unit> roots = new ArrayList<>();
+        private final Deque<Unit> groups = new ArrayDeque<>();
+        private Unit leaf;
+        private boolean clipPending;
+        // Nesting of processOperator calls; 1 while a page operator runs
+        private int depth;
+
+        private float paintTop;
+        private float paintBottom;
+        private float paintLeft;
+        private float paintRight;
+        private float pathTop;
+        private float pathBottom;
+        private float pathLeft;
+        private float pathRight;
+        private final Point2D.Float current = new Point2D.Float();
+
+        Indexer(PDPage page) {
+            super(page);
+            resetPaint();
+            resetPath();
+        }
+
+        @Override
+        protected void processOperator(Operator operator, List<COSBase> operands) throws IOException {
+            if (depth > 0) {
+                depth++;
+                try {
+                    super.processOperator(operator, operands);
+                } finally {
+                    depth--;
+                }
+                return;
+            }
+
+            int index = operators++;
+            String name = operator.getName();
+            if (leaf == null) {
+                if (name.equals("BT")) {
+                    leaf = open(Kind.TEXT, index);
+                } else if (PATH_OPS.contains(name)) {
+                    leaf = open(Kind.PATH, index);
+                    clipPending = false;
+                } else if (name.equals("Do") || name.equals("BI") || name.equals("sh")) {
+                    leaf = open(Kind.SINGLE, index);
+                } else if (name.equals("q")) {
+                    groups.push(open(Kind.GROUP, index));
+                }
+            } else if (leaf.kind == Kind.TEXT
+                       && (name.equals("q") || name.equals("Q") || name.equals("cm"))) {
+                // Not allowed inside a text object; leave such text alone
+                leaf.movable = false;
+            }
+
+            depth++;
+            try {
+                super.processOperator(operator, operands);
+            } finally {
+                depth--;
+            }
+
+            if (leaf != null) {
+                boolean ends = leaf.kind == Kind.SINGLE
+                    || (leaf.kind == Kind.TEXT && name.equals("ET"))
+                    || (leaf.kind == Kind.PATH && PAINT_OPS.contains(name));
+                if (ends) closeLeaf(index);
+            } else if (name.equals("Q") && !groups.isEmpty()) {
+                closeGroup(index);
+            }
+        }
+
+        private Unit open(Kind kind, int index) {
+            resetPaint();
+            return new Unit(kind, index, getGraphicsState().clone());
+        }
+
+        private void closeLeaf(int index) {
+            Unit unit = leaf;
+            leaf = null;
+            unit.last = index;
+            if (paintTop >= paintBottom) {
+                unit.include(paintLeft, paintRight, paintBottom, paintTop);
+                pageTop = Math.max(pageTop, paintTop);
+                pageBottom = Math.min(pageBottom, paintBottom);
+            }
+            if (unit.kind == Kind.PATH && clipPending) {
+                // The clip belongs to the enclosing group, which then moves as one
+                clipPending = false;
+                if (!groups.isEmpty()) groups.peek().clipped = true;
+                return;
+            }
+            unit.movable &= sameStream(unit);
+            add(unit);
+        }
+
+        private void closeGroup(int index) {
+            Unit group = groups.pop();
+            group.last = index;
+            if (group.clipped && sameStream(group)) {
+                for (Unit child : group.children) {
+                    group.include(child);
+                }
+                group.children = null;
+                add(group);
+            } else {
+                for (Unit child : group.children) add(child);
+            }
+        }
+
+        private void add(Unit unit) {
+            if (groups.isEmpty()) {
+                roots.add(unit);
+            } else {
+                groups.peek().children.add(unit);
+            }
+        }
+
+        private boolean sameStream(Unit unit) {
+            return streamOf(unit.first) == streamOf(unit.last);
+        }
+
+        /**
+         * Top-level units; groups left open at the end of the page don't
+         * hold anything together
+         */
+        List<Unit> finish() {
+            while (!groups.isEmpty()) {
+                Unit group = groups.pop();
+                for (Unit child : group.children) add(child);
+            }
+            return roots;
+        }
+
+        private void paint(double minX, double maxX, double low, double high) {
+            paintLeft = (float) Math.min(paintLeft, minX);
+            paintRight = (float) Math.max(paintRight, maxX);
+            paintBottom = (float) Math.min(paintBottom, low);
+            paintTop = (float) Math.max(paintTop, high);
+        }
+
+        private void paint(Rectangle2D bounds) {
+            paint(bounds.getMinX(), bounds.getMaxX(), bounds.getMinY(), bounds.getMaxY());
+        }
+
+        private void resetPaint() {
+            paintTop = Float.NEGATIVE_INFINITY;
+            paintBottom = Float.POSITIVE_INFINITY;
+            paintLeft = Float.POSITIVE_INFINITY;
+            paintRight = Float.NEGATIVE_INFINITY;
+        }
+
+        private void pathPoint(float x, float y) {
+            pathLeft = Math.min(pathLeft, x);
+            pathRight = Math.max(pathRight, x);
+            pathBottom = Math.min(pathBottom, y);
+            pathTop = Math.max(pathTop, y);
+            current.setLocation(x, y);
+        }
+
+        private void resetPath() {
+            pathTop = Float.NEGATIVE_INFINITY;
+            pathBottom = Float.POSITIVE_INFINITY;
+            pathLeft = Float.POSITIVE_INFINITY;
+            pathRight = Float.NEGATIVE_INFINITY;
+        }
+
+        private void paintPath() {
+            if (pathTop >= pathBottom) paint(pathLeft, pathRight, pathBottom, pathTop);
+            resetPath();
+        }
+
+        @Override
+        protected void showGlyph(Matrix textRenderingMatrix, PDFont font, int code,
+                                 Vector displacement) {
+            // Rough ascent and descent are enough to order lines
+            float x = textRenderingMatrix.getTranslateX();
+            float y = textRenderingMatrix.getTranslateY();
+            float size = textRenderingMatrix.getScalingFactorY();
+            float width = displacement.getX() * textRenderingMatrix.getScalingFactorX();
+            paint(Math.min(x, x + width), Math.max(x, x + width), y - 0.25f * size, y + 0.85f * size);
+        }
+
+        @Override
+        public void appendRectangle(Point2D p0, Point2D p1, Point2D p2, Point2D p3) {
+            for (Point2D p : Arrays.asList(p0, p1, p2, p3)) {
+                pathPoint((float) p.getX(), (float) p.getY());
+            }
+        }
+
+        @Override
+        public void drawImage(PDImage pdImage) {
+            Rectangle2D bounds = getGraphicsState().getCurrentTransformationMatrix()
+                .createAffineTransform()
+                .createTransformedShape(new Rectangle2D.Float(0, 0, 1, 1))
+                .getBounds2D();
+            paint(bounds);
+        }
+
+        @Override
+        public void clip(int windingRule) {
+            if (depth != 1 || pathTop < pathBottom) return;
+            // A clip around the whole page constrains nothing
+            PDRectangle box = page.getCropBox();
+            if (pathBottom <= box.getLowerLeftY() + 1 && pathTop >= box.getUpperRightY() - 1) {
+                return;
+            }
+            clipPending = true;
+        }
+
+        @Override
+        public void moveTo(float x, float y) {
+            pathPoint(x, y);
+        }
+
+        @Override
+        public void lineTo(float x, float y) {
+            pathPoint(x, y);
+        }
+
+        @Override
+        public void curveTo(float x1, float y1, float x2, float y2, float x3, float y3) {
+            pathPoint(x1, y1);
+            pathPoint(x2, y2);
+            pathPoint(x3, y3);
+        }
+
+        @Override
+        public Point2D getCurrentPoint() {
+            return current;
+        }
+
+        @Override
+        public void closePath() {
+        }
+
+        @Override
+        public void endPath() {
+            resetPath();
+        }
+
+        @Override
+        public void strokePath() {
+            paintPath();
+        }
+
+        @Override
+        public void fillPath(int windingRule) {
+            paintPath();
+        }
+
+        @Override
+        public void fillAndStrokePath(int windingRule) {
+            paintPath();
+        }
+
+        @Override
+        public void shadingFill(COSName shadingName) {
+            paint(getGraphicsState().getCurrentClippingPath().getBounds2D());
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.pdf;
+
+import org.apache.pdfbox.pdmodel.*;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.pdfbox.text.TextPosition;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Single-pass document analysis engine.
+ *
+ * Walks every page's content stream once and hands each text run to the
+ * registered consumers (columns, sections, fonts, text blocks), then
+ * collects their results into an immutable {@link DocumentModel}.
+ */
+public class DocumentAnalyzer {
+
+    /**
+     * Where text runs come from
+     */
+    public enum TextSource {
+        /** PDFTextStripper words, sorted by position, for comparison */
+        STRIPPER,
+        /**
+         * {@link GlyphRunReader} runs in content-stream order, or in reading
+         * order when a consumer needs it
+         */
+        GLYPHS,
+        /** {@link GlyphRunReader} runs in reading order */
+        GLYPHS_SORTED
+    }
+
+    private final List<AnalysisConsumer> consumers = new ArrayList<>();
+    private int startPage = 1;
+    private int endPage = Integer.MAX_VALUE;
+    private TextSource textSource = TextSource.valueOf(
+        System.getProperty("resume.analysis.textSource", TextSource.GLYPHS.name()));
+
+    /**
+     * Engine with every built-in consumer registered
+     */
+    public static DocumentAnalyzer withDefaultConsumers() {
+        return new DocumentAnalyzer()
+            .addConsumer(new ColumnConsumer())
+            .addConsumer(new SectionConsumer())
+            .addConsumer(new FontConsumer())
+            .addConsumer(new TextBlockConsumer());
+    }
+
+    public DocumentAnalyzer addConsumer(AnalysisConsumer consumer) {
+        consumers.add(consumer);
+        return this;
+    }
+
+    /**
+     * Restrict the pass to a page range (1-based, inclusive)
+     */
+    public DocumentAnalyzer setPageRange(int start, int end) {
+        this.startPage = start;
+        this.endPage = end;
+        return this;
+    }
+
+    public DocumentAnalyzer setTextSource(TextSource source) {
+        this.textSource = source;
+        return this;
+    }
+
+    /**
+     * Run the single extraction pass and build the document model
+     */
+    public DocumentModel analyze(PDDocument doc) throws IOException {
+        if (textSource == TextSource.STRIPPER) {
+            RunDispatcher dispatcher = new RunDispatcher();
+            dispatcher.setSortByPosition(true);
+            dispatcher.setStartPage(startPage);
+            dispatcher.setEndPage(endPage);
+            // Nothing reads the assembled text, so don't collect it
+            dispatcher.writeText(doc, Writer.nullWriter());
+        } else {
+            readGlyphs(doc);
+        }
+
+        DocumentModel.Builder builder = new DocumentModel.Builder(doc);
+        for (AnalysisConsumer consumer : consumers) {
+            consumer.contribute(builder);
+        }
+        return builder.build();
+    }
+
+    private void readGlyphs(PDDocument doc) throws IOException {
+        GlyphRunReader reader = new GlyphRunReader(run -> {
+            for (AnalysisConsumer consumer : consumers) {
+                consumer.textRun(run);
+            }
+        });
+        boolean sorted = textSource == TextSource.GLYPHS_SORTED;
+        for (AnalysisConsumer consumer : consumers) {
+            sorted |= consumer.needsReadingOrder();
+        }
+        reader.setSortByPosition(sorted);
+
+        int pageNo = 0;
+        for (PDPage page : doc.getPages()) {
+            pageNo++;
+            if (pageNo < startPage) continue;
+            if (pageNo > endPage) break;
+            for (AnalysisConsumer consumer : consumers) {
+                consumer.startPage(pageNo - 1, page);
+            }
+            reader.readPage(pageNo - 1, page);
+        }
+    }
+
+    // Fans the stripper callbacks out to every consumer
+    class RunDispatcher extends PDFTextStripper {
+        private final TextRun run = new TextRun();
+        private int currentPage = 0;
+
+        public RunDispatcher() throws IOException {
+            super();
+        }
+
+        @Override
+        protected void writeString(String text, List<TextPosition> positions)
+                throws IOException {
+            if (positions.isEmpty()) return;
+
+            run.reset(currentPage, text, positions);
+            for (AnalysisConsumer consumer : consumers) {
+                consumer.textRun(run);
+            }
+        }
+
+        @Override
+        protected void startPage(PDPage page) throws IOException {
+            currentPage = getCurrentPageNo() - 1;
+            for (AnalysisConsumer consumer : consumers) {
+                consumer.startPage(currentPage, page);
+            }
+            super.startPage(page);
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package com.example.pdf;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.ScratchFile;
+import org.apache.pdfbox.pdfparser.PDFParser;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.io.*;
+import java.lang.management.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Memory-bounded document loading.
+ *
+ * Chooses how much of a parsed document PDFBox may keep on heap:
+ * main memory only, main memory up to a cap with the rest in a scratch
+ * file, or scratch file only. With AUTO the choice follows the file size.
+ * Input files can be read through a memory-mapped buffer instead of
+ * being copied onto the heap.
+ */
+public class DocumentLoader {
+
+    public enum Policy {
+        MAIN_MEMORY,
+        MIXED,
+        TEMP_FILE,
+        AUTO
+    }
+
+    private Policy policy = Policy.valueOf(
+        System.getProperty("resume.load.policy", Policy.AUTO.name()));
+    private long heapCapBytes = Long.getLong("resume.load.heapCap", 16L << 20);
+    private long mixedThreshold = Long.getLong("resume.load.mixedThreshold", 2L << 20);
+    private long tempFileThreshold = Long.getLong("resume.load.tempFileThreshold", 32L << 20);
+    private boolean memoryMapped = Boolean.parseBoolean(
+        System.getProperty("resume.load.mmap", "true"));
+    private File tempDir = System.getProperty("resume.load.tempDir") != null
+        ? new File(System.getProperty("resume.load.tempDir")) : null;
+    private Consumer<LoadReport> reportListener;
+
+    public DocumentLoader setPolicy(Policy policy) {
+        this.policy = policy;
+        return this;
+    }
+
+    /**
+     * Heap allowed for parsed streams under MIXED before spilling to disk
+     */
+    public DocumentLoader setHeapCap(long bytes) {
+        this.heapCapBytes = bytes;
+        return this;
+    }
+
+    /**
+     * AUTO thresholds: below mixed = MAIN_MEMORY, below tempFile = MIXED
+     */
+    public DocumentLoader setAutoThresholds(long mixed, long tempFile) {
+        this.mixedThreshold = mixed;
+        this.tempFileThreshold = tempFile;
+        return this;
+    }
+
+    public DocumentLoader setMemoryMapped(boolean mapped) {
+        this.memoryMapped = mapped;
+        return this;
+    }
+
+    public DocumentLoader setTempDir(File dir) {
+        this.tempDir = dir;
+        return this;
+    }
+
+    /**
+     * Called after every load with its memory figures
+     */
+    public DocumentLoader setReportListener(Consumer<LoadReport> listener) {
+        this.reportListener = listener;
+        return this;
+    }
+
+    public PDDocument load(File file) throws IOException {
+        long size = file.length();
+        Policy effective = resolve(size);
+        boolean mapped = memoryMapped && size > 0 && size <= Integer.MAX_VALUE;
+        HeapProbe probe = new HeapProbe();
+
+        PDDocument doc;
+        if (mapped) {
+            // On success the document owns both and closes them with itself
+            MappedRandomAccessRead source = MappedRandomAccessRead.open(file);
+            ScratchFile scratch = null;
+            try {
+                scratch = new ScratchFile(settingFor(effective));
+                PDFParser parser = new PDFParser(source, scratch);
+                parser.parse();
+                doc = parser.getPDDocument();
+            } catch (IOException | RuntimeException e) {
+                source.close();
+                if (scratch != null) {
+                    try {
+                        scratch.close();
+                    } catch (IOException suppressed) {
+                        e.addSuppressed(suppressed);
+                    }
+                }
+                throw e;
+            }
+        } else {
+            doc = PDDocument.load(file, settingFor(effective));
+        }
+
+        report(probe.finish(file.getPath(), size, effective, mapped), doc);
+        return doc;
+    }
+
+    /**
+     * Load from a stream of unknown length; sizeHint of -1 means unknown,
+     * which AUTO treats as a large document
+     */
+    public PDDocument load(InputStream input, long sizeHint) throws IOException {
+        Policy effective = resolve(sizeHint < 0 ? Long.MAX_VALUE : sizeHint);
+        HeapProbe probe = new HeapProbe();
+        PDDocument doc = PDDocument.load(input, settingFor(effective));
+        report(probe.finish("<stream>", sizeHint, effective, false), doc);
+        return doc;
+    }
+
+    Policy resolve(long size) {
+        if (policy != Policy.AUTO) return policy;
+        if (size < mixedThreshold) return Policy.MAIN_MEMORY;
+        if (size < tempFileThreshold) return Policy.MIXED;
+        return Policy.TEMP_FILE;
+    }
+
+    private MemoryUsageSetting settingFor(Policy effective) {
+        MemoryUsageSetting setting;
+        switch (effective) {
+            case MIXED:
+                setting = MemoryUsageSetting.setupMixed(heapCapBytes);
+                break;
+            case TEMP_FILE:
+                setting = MemoryUsageSetting.setupTempFileOnly();
+                break;
+            default:
+                setting = MemoryUsageSetting.setupMainMemoryOnly();
+        }
+        if (tempDir != null) {
+            setting.setTempDir(tempDir);
+        }
+        return setting;
+    }
+
+    private void report(LoadReport report, PDDocument doc) {
+        ResumeMetrics.recordLoad(report, doc.getNumberOfPages());
+        if (reportListener != null) {
+            reportListener.accept(report);
+        }
+    }
+
+    /**
+     * Memory figures for one load. Allocated bytes are what the loading
+     * thread allocated, or -1 where the JVM can't tell (virtual threads).
+     * The heap high-water mark is the whole process's, as recorded by the
+     * JVM's heap pools at the end of the load, not this document's share.
+     */
+    public static class LoadReport {
+        final String path;
+        final long fileSize;
+        final Policy policy;
+        final boolean memoryMapped;
+        final long allocatedBytes;
+        final long processHeapPeakBytes;
+        final long millis;
+
+        LoadReport(String path, long size, Policy policy, boolean mapped,
+                   long allocated, long peak, long millis) {
+            this.path = path;
+            this.fileSize = size;
+            this.policy = policy;
+            this.memoryMapped = mapped;
+            this.allocatedBytes = allocated;
+            this.processHeapPeakBytes = peak;
+            this.millis = millis;
+        }
+
+        public Policy getPolicy() { return policy; }
+        public long getAllocatedBytes() { return allocatedBytes; }
+        public long getProcessHeapPeakBytes() { return processHeapPeakBytes; }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d KB, %s%s, %d ms%s, process-wide heap high-water %d KB",
+                                 path, fileSize >> 10, policy, memoryMapped ? " (mmap)" : "",
+                                 millis,
+                                 allocatedBytes >= 0
+                                     ? ", allocated " + (allocatedBytes >> 10) + " KB on the loading thread"
+                                     : ", allocation not measured",
+                                 processHeapPeakBytes >> 10);
+        }
+    }
+
+    // Captures the loading thread's allocation around a single load. Pool
+    // peaks are never reset here: they are shared by the whole process, and
+    // resetting them would clobber concurrent loads and anyone else watching.
+    static class HeapProbe {
+        private final long startNanos = System.nanoTime();
+        private final long startAllocated = allocatedBytes();
+
+        LoadReport finish(String path, long size, Policy policy, boolean mapped) {
+            long peak = 0;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    peak += pool.getPeakUsage().getUsed();
+                }
+            }
+            long endAllocated = allocatedBytes();
+            long allocated = startAllocated < 0 || endAllocated < 0 ? -1 : endAllocated - startAllocated;
+            return new LoadReport(path, size, policy, mapped, allocated, peak,
+                                  (System.nanoTime() - startNanos) / 1_000_000);
+        }
+
+        static long allocatedBytes() {
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            if (threads instanceof com.sun.management.ThreadMXBean) {
+                return ((com.sun.management.ThreadMXBean) threads)
+                    .getCurrentThreadAllocatedBytes();
+            }
+            return -1;
+        }
+    }
+}
+
+/**
+ * Read-only PDF source backed by a memory-mapped file, so the input bytes
+ * stay in the page cache instead of being copied onto the heap
+ */
+class MappedRandomAccessRead implements RandomAccessRead {
+    private MappedByteBuffer buffer;
+
+    private MappedRandomAccessRead(MappedByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    static MappedRandomAccessRead open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            return new MappedRandomAccessRead(
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkClosed();
+        return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] b) throws IOException {
+        return read(b, 0, b.length);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        checkClosed();
+        if (len == 0) return 0;
+        int n = Math.min(len, buffer.remaining());
+        if (n == 0) return -1;
+        buffer.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public long getPosition() throws IOException {
+        checkClosed();
+        return buffer.position();
+    }
+
+    @Override
+    public void seek(long position) throws IOException {
+        checkClosed();
+        if (position < 0) {
+            throw new IOException("Invalid position " + position);
+        }
+        buffer.position((int) Math.min(position, buffer.limit()));
+    }
+
+    @Override
+    public long length() throws IOException {
+        checkClosed();
+        return buffer.limit();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return buffer == null;
+    }
+
+    @Override
+    public int peek() throws IOException {
+        checkClosed();
+        return buffer.hasRemaining() ? buffer.get(buffer.position()) & 0xff : -1;
+    }
+
+    @Override
+    public void rewind(int bytes) throws IOException {
+        checkClosed();
+        buffer.position(buffer.position() - bytes);
+    }
+
+    @Override
+    public byte[] readFully(int length) throws IOException {
+        checkClosed();
+        if (buffer.remaining() < length) {
+            throw new EOFException("Premature end of buffer reached");
+        }
+        byte[] b = new byte[length];
+        buffer.get(b);
+        return b;
+    }
+
+    @Override
+    public boolean isEOF() throws IOException {
+        checkClosed();
+        return !buffer.hasRemaining();
+    }
+
+    @Override
+    public int available() throws IOException {
+        checkClosed();
+        return buffer.remaining();
+    }
+
+    @Override
+    public void close() {
+        buffer = null;
+    }
+
+    private void checkClosed() throws IOException {
+        if (buffer == null) {
+            throw new IOException("RandomAccessRead already closed");
+        }
+    }
+}
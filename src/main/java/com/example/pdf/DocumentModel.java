@@ -0,0 +1,120 @@
+package com.example.pdf;
+
+import org.apache.pdfbox.pdmodel.*;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+
+import java.util.*;
+
+/**
+ * Immutable result of a single {@link DocumentAnalyzer} pass
+ */
+public class DocumentModel {
+
+    private final float[] pageWidths;
+    private final float[] pageHeights;
+    private final String layoutType;
+    private final int columnCount;
+    private final List<LayoutAnalyzer.ColumnInfo> columns;
+    private final float contentWidth;
+    private final Map<String, SectionInfo> sections;
+    private final List<FontUsage> fontUsages;
+    private final List<LayoutDetector.TextBlock> textBlocks;
+
+    private DocumentModel(Builder b) {
+        this.pageWidths = b.pageWidths;
+        this.pageHeights = b.pageHeights;
+        this.layoutType = b.layoutType;
+        this.columnCount = b.columnCount;
+        this.columns = Collections.unmodifiableList(new ArrayList<>(b.columns));
+        this.contentWidth = b.contentWidth;
+        this.sections = Collections.unmodifiableMap(new HashMap<>(b.sections));
+        this.fontUsages = Collections.unmodifiableList(new ArrayList<>(b.fontUsages));
+        this.textBlocks = Collections.unmodifiableList(new ArrayList<>(b.textBlocks));
+    }
+
+    // Getters
+    public int getPageCount() { return pageWidths.length; }
+    public float getPageWidth(int pageIndex) { return pageWidths[pageIndex]; }
+    public float getPageHeight(int pageIndex) { return pageHeights[pageIndex]; }
+    public String getLayoutType() { return layoutType; }
+    public int getColumnCount() { return columnCount; }
+    public List<LayoutAnalyzer.ColumnInfo> getColumns() { return columns; }
+    public float getContentWidth() { return contentWidth; }
+    public Map<String, SectionInfo> getSections() { return sections; }
+    public List<FontUsage> getFontUsages() { return fontUsages; }
+    public List<LayoutDetector.TextBlock> getTextBlocks() { return textBlocks; }
+
+    /**
+     * Glyph count for one (font, size) pair, in first-seen order
+     */
+    public static class FontUsage {
+        final PDFont font;
+        final float fontSize;
+        final int glyphCount;
+
+        public FontUsage(PDFont font, float size, int glyphs) {
+            this.font = font;
+            this.fontSize = size;
+            this.glyphCount = glyphs;
+        }
+
+        public PDFont getFont() { return font; }
+        public float getFontSize() { return fontSize; }
+        public int getGlyphCount() { return glyphCount; }
+    }
+
+    // Filled in by the analysis consumers
+    public static class Builder {
+        private final float[] pageWidths;
+        private final float[] pageHeights;
+        private String layoutType;
+        private int columnCount;
+        private List<LayoutAnalyzer.ColumnInfo> columns = new ArrayList<>();
+        private float contentWidth;
+        private Map<String, SectionInfo> sections = new HashMap<>();
+        private List<FontUsage> fontUsages = new ArrayList<>();
+        private List<LayoutDetector.TextBlock> textBlocks = new ArrayList<>();
+
+        public Builder(PDDocument doc) {
+            int pageCount = doc.getNumberOfPages();
+            pageWidths = new float[pageCount];
+            pageHeights = new float[pageCount];
+            for (int i = 0; i < pageCount; i++) {
+                PDRectangle mediaBox = doc.getPage(i).getMediaBox();
+                pageWidths[i] = mediaBox.getWidth();
+                pageHeights[i] = mediaBox.getHeight();
+            }
+        }
+
+        public float getPageWidth(int pageIndex) { return pageWidths[pageIndex]; }
+
+        public Builder setLayout(String type, int count,
+                                 List<LayoutAnalyzer.ColumnInfo> cols, float width) {
+            this.layoutType = type;
+            this.columnCount = count;
+            this.columns = cols;
+            this.contentWidth = width;
+            return this;
+        }
+
+        public Builder setSections(Map<String, SectionInfo> s) {
+            this.sections = s;
+            return this;
+        }
+
+        public Builder setFontUsages(List<FontUsage> usages) {
+            this.fontUsages = usages;
+            return this;
+        }
+
+        public Builder setTextBlocks(List<LayoutDetector.TextBlock> blocks) {
+            this.textBlocks = blocks;
+            return this;
+        }
+
+        public DocumentModel build() {
+            return new DocumentModel(this);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.example.pdf;
+
+import org.apache.pdfbox.cos.*;
+import org.apache.pdfbox.pdmodel.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Writes edited documents either as a full rewrite or as an incremental
+ * update. An incremental update copies the original bytes unchanged and
+ * appends only the new and modified objects.
+ *
+ * PDFBox only writes objects that are flagged as updated and that can
+ * be reached from the catalog through other updated objects. So every
+ * page handed to {@link #markChanged} has the whole path from the
+ * catalog down to it flagged before saving.
+ *
+ * Content written through {@link #openContent} stays uncompressed until
+ * save, when the {@link StreamCompressor} deflates all of it at once.
+ * With an {@link ImageDownsampler} set, oversized images are scaled down
+ * just before that.
+ *
+ * COMPACT mode writes through {@link CompactWriter}, merging duplicate
+ * resources and packing objects into object streams; encrypted documents
+ * get a plain full rewrite instead.
+ */
+public class DocumentSaver {
+
+    public enum Mode {
+        FULL,
+        INCREMENTAL,
+        /** Full rewrite with duplicate resources merged and object/xref streams */
+        COMPACT
+    }
+
+    private Mode mode = Mode.valueOf(System.getProperty("resume.save.mode", Mode.FULL.name()));
+    private final Set<PDPage> changedPages = new LinkedHashSet<>();
+    private final List<COSUpdateInfo> changedObjects = new ArrayList<>();
+    private final Set<COSStream> pendingStreams = new LinkedHashSet<>();
+    private StreamCompressor compressor = StreamCompressor.fromSystemProperties();
+    private ImageDownsampler images = ImageDownsampler.fromSystemProperties();
+    private ImageDownsampler.Result lastImageResult;
+
+    public DocumentSaver setMode(Mode mode) {
+        this.mode = mode;
+        return this;
+    }
+
+    public Mode getMode() { return mode; }
+
+    public DocumentSaver setCompressor(StreamCompressor compressor) {
+        this.compressor = compressor;
+        return this;
+    }
+
+    /**
+     * Downsample oversized images on save (null: leave images alone)
+     */
+    public DocumentSaver setImageDownsampler(ImageDownsampler images) {
+        this.images = images;
+        return this;
+    }
+
+    /**
+     * What the last save's image stage did, or null if it didn't run
+     */
+    public ImageDownsampler.Result getLastImageResult() { return lastImageResult; }
+
+    /**
+     * Replace a stream's content; what is written is stored uncompressed
+     * and Flate-compressed along with the document's other new content on
+     * save
+     */
+    public OutputStream openContent(COSStream stream) throws IOException {
+        pendingStreams.add(stream);
+        return stream.createOutputStream();
+    }
+
+    /**
+     * Record a page whose content streams or resources were modified
+     */
+    public void markChanged(PDPage page) {
+        changedPages.add(page);
+    }
+
+    /**
+     * Record an existing object that was modified in place (e.g. a rewritten stream)
+     */
+    public void markChanged(COSUpdateInfo object) {
+        changedObjects.add(object);
+    }
+
+    public void save(PDDocument doc, String outputPath) throws IOException {
+        downsampleImages(doc);
+        compressPending();
+        ResumeMetrics.time(ResumeMetrics.SAVE, "phase", "write", () -> write(doc, outputPath));
+        ResumeMetrics.recordBytesOut(Files.size(Paths.get(outputPath)));
+    }
+
+    public void save(PDDocument doc, OutputStream output) throws IOException {
+        downsampleImages(doc);
+        compressPending();
+        CountingOutputStream counted = new CountingOutputStream(output);
+        ResumeMetrics.time(ResumeMetrics.SAVE, "phase", "write", () -> write(doc, counted));
+        ResumeMetrics.recordBytesOut(counted.count);
+    }
+
+    private void downsampleImages(PDDocument doc) throws IOException {
+        lastImageResult = null;
+        if (images == null) return;
+        ImageDownsampler.Result result = ResumeMetrics.time(
+            ResumeMetrics.SAVE, "phase", "images", () -> images.process(doc, this));
+        if (result.downsampled > 0 || result.failed > 0) {
+            System.out.println("- Images: " + result);
+        }
+        ResumeMetrics.recordImageBytesSaved(result.getBytesSaved());
+        ResumeMetrics.recordImageFailures(result.failed);
+        lastImageResult = result;
+    }
+
+    private void compressPending() throws IOException {
+        if (pendingStreams.isEmpty()) return;
+        ResumeMetrics.time(ResumeMetrics.SAVE, "phase", "compress",
+                           () -> { compressor.compress(pendingStreams); });
+        pendingStreams.clear();
+    }
+
+    private void write(PDDocument doc, String outputPath) throws IOException {
+        if (useCompact(doc)) {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(Paths.get(outputPath)))) {
+                saveCompact(doc, out);
+                return;
+            } catch (IOException | RuntimeException e) {
+                System.out.println("Warning: compact save failed (" + e.getMessage()
+                                   + "), writing a plain full rewrite");
+            }
+            doc.save(outputPath);
+            return;
+        }
+        if (!useIncremental(doc)) {
+            doc.save(outputPath);
+            return;
+        }
+
+        Path output = Paths.get(outputPath);
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(output))) {
+            saveIncremental(doc, out);
+            return;
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Warning: incremental save failed (" + e.getMessage()
+                               + "), rewriting the whole document");
+        }
+        doc.save(outputPath);
+    }
+
+    private void write(PDDocument doc, OutputStream output) throws IOException {
+        // A half-written stream can't be taken back, so only fall back up front
+        if (useCompact(doc)) {
+            saveCompact(doc, output);
+        } else if (useIncremental(doc)) {
+            saveIncremental(doc, output);
+        } else {
+            doc.save(output);
+        }
+    }
+
+    private boolean useCompact(PDDocument doc) {
+        return mode == Mode.COMPACT && !doc.isEncrypted();
+    }
+
+    private void saveCompact(PDDocument doc, OutputStream output) throws IOException {
+        CompactWriter.Result result = new CompactWriter().write(doc, output);
+        System.out.println("- Compact save: " + result);
+    }
+
+    private boolean useIncremental(PDDocument doc) {
+        // Encrypted documents would need every new object encrypted as well
+        return mode == Mode.INCREMENTAL && !doc.isEncrypted();
+    }
+
+    private void saveIncremental(PDDocument doc, OutputStream output) throws IOException {
+        doc.getDocumentCatalog().getCOSObject().setNeedToBeUpdated(true);
+        for (PDPage page : changedPages) {
+            markPath(page);
+        }
+        for (COSUpdateInfo object : changedObjects) {
+            object.setNeedToBeUpdated(true);
+        }
+        doc.saveIncremental(output);
+    }
+
+    // Counts the bytes written through it
+    static class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    // Flag the page, its content array, its resources and every ancestor node
+    private static void markPath(PDPage page) {
+        COSDictionary dict = page.getCOSObject();
+        dict.setNeedToBeUpdated(true);
+
+        COSBase contents = dict.getDictionaryObject(COSName.CONTENTS);
+        if (contents instanceof COSArray) {
+            ((COSArray) contents).setNeedToBeUpdated(true);
+        }
+
+        PDResources resources = page.getResources();
+        if (resources != null) {
+            COSDictionary resourceDict = resources.getCOSObject();
+            resourceDict.setNeedToBeUpdated(true);
+            for (COSName category : Arrays.asList(COSName.FONT, COSName.XOBJECT,
+                                                  COSName.EXT_G_STATE)) {
+                COSBase entries = resourceDict.getDictionaryObject(category);
+                if (entries instanceof COSDictionary) {
+                    ((COSDictionary) entries).setNeedToBeUpdated(true);
+                }
+            }
+        }
+
+        COSBase parent = dict.getDictionaryObject(COSName.PARENT);
+        while (parent instanceof COSDictionary) {
+            COSDictionary node = (COSDictionary) parent;
+            node.setNeedToBeUpdated(true);
+            COSBase kids = node.getDictionaryObject(COSName.KIDS);
+            if (kids instanceof COSArray) {
+                ((COSArray) kids).setNeedToBeUpdated(true);
+            }
+            parent = node.getDictionaryObject(COSName.PARENT);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.pdf;
+
+import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Streams per-resume edit plans out of a JSON or YAML file as batch jobs.
+ *
+ * A plan is a ResumeModificationConfig plus the resume it applies to:
+ *
+ * <pre>
+ * [{"input": "alice.pdf", "output": "out/alice.pdf",
+ *   "newExperiences": [...], "skillModifications": {...}, "newCertifications": [...]}, ...]
+ * </pre>
+ *
+ * JSON files hold one plan or an array of them; YAML files hold one plan
+ * (or a list of plans) per "---" document. Plans are parsed one at a time
+ * as the batch pipeline asks for them, so a file of 50k plans never sits
+ * in memory. Relative paths resolve against the plan file's directory,
+ * and plans without an output go to outputDir.
+ *
+ * A plan that fails to parse or validate becomes a job that has already
+ * failed, so it shows up in the batch report. A syntax error ends the
+ * stream the same way, since nothing after it can be trusted.
+ */
+public class EditPlanReader implements Iterator<BatchResumeProcessor.BatchJob>, Closeable {
+
+    private static final Gson GSON = new Gson();
+
+    private final Path source;
+    private final Path baseDir;
+    private final Path outputDir;
+    private final Reader reader;
+    private final Iterator<JsonElement> plans;
+    private int index;
+    private boolean broken;
+    private RuntimeException syntaxError;
+
+    public EditPlanReader(Path source, Path outputDir) throws IOException {
+        this.source = source;
+        this.baseDir = source.toAbsolutePath().getParent();
+        this.outputDir = outputDir;
+        this.reader = Files.newBufferedReader(source, StandardCharsets.UTF_8);
+
+        String name = source.getFileName().toString().toLowerCase();
+        this.plans = name.endsWith(".yaml") || name.endsWith(".yml")
+            ? yamlPlans(reader) : jsonPlans(reader);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (broken) return false;
+        if (syntaxError != null) return true;
+        try {
+            return plans.hasNext();
+        } catch (RuntimeException e) {
+            // Handed out as a failed job by the next() call that follows
+            syntaxError = e;
+            return true;
+        }
+    }
+
+    @Override
+    public BatchResumeProcessor.BatchJob next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        index++;
+        JsonElement element;
+        try {
+            if (syntaxError != null) throw syntaxError;
+            element = plans.next();
+        } catch (RuntimeException e) {
+            broken = true;
+            return failed(e);
+        }
+
+        try {
+            EditPlan plan = GSON.fromJson(element, EditPlan.class);
+            if (plan == null || plan.input == null) {
+                throw new IllegalArgumentException("Plan has no input");
+            }
+            plan.validate();
+
+            Path input = baseDir.resolve(plan.input);
+            Path output = plan.output != null ? baseDir.resolve(plan.output)
+                                              : BatchResumeProcessor.defaultOutput(input, outputDir);
+            return new BatchResumeProcessor.BatchJob(input, output, plan);
+        } catch (JsonParseException | IllegalArgumentException e) {
+            return failed(e);
+        }
+    }
+
+    private BatchResumeProcessor.BatchJob failed(Exception error) {
+        BatchResumeProcessor.BatchJob job = new BatchResumeProcessor.BatchJob(
+            baseDir.resolve(source.getFileName() + "#" + index), null);
+        job.error = error;
+        job.failedStage = "plan";
+        return job;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private static Iterator<JsonElement> jsonPlans(Reader reader) {
+        JsonReader json = new JsonReader(reader);
+        return new Iterator<JsonElement>() {
+            private boolean started;
+            private boolean array;
+            private boolean single;
+
+            @Override
+            public boolean hasNext() {
+                try {
+                    if (!started) {
+                        started = true;
+                        JsonToken first = json.peek();
+                        array = first == JsonToken.BEGIN_ARRAY;
+                        if (array) {
+                            json.beginArray();
+                        } else {
+                            single = first != JsonToken.END_DOCUMENT;
+                        }
+                    }
+                    return array ? json.hasNext() : single;
+                } catch (IOException e) {
+                    throw new JsonIOException(e);
+                }
+            }
+
+            @Override
+            public JsonElement next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                single = false;
+                return JsonParser.parseReader(json);
+            }
+        };
+    }
+
+    private static Iterator<JsonElement> yamlPlans(Reader reader) {
+        Iterator<Object> documents =
+            new Yaml(new SafeConstructor(new LoaderOptions())).loadAll(reader).iterator();
+        return new Iterator<JsonElement>() {
+            // Plans of the current document when it is a list
+            private Iterator<?> pending = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!pending.hasNext()) {
+                    if (!documents.hasNext()) return false;
+                    Object document = documents.next();
+                    if (document == null) continue;
+                    pending = document instanceof List
+                        ? ((List<?>) document).iterator()
+                        : Collections.singletonList(document).iterator();
+                }
+                return true;
+            }
+
+            @Override
+            public JsonElement next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return GSON.toJsonTree(pending.next());
+            }
+        };
+    }
+
+    /**
+     * One plan as written in the file: a config plus its input and output
+     */
+    static class EditPlan extends ResumeModificationConfig {
+        String input;
+        String output;
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.pdf;
+
+import org.apache.pdfbox.cos.*;
+import org.apache.pdfbox.pdmodel.*;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Collects the text an editor adds and writes it out once per page.
+ *
+ * Edits ask for a page's writer; the first request opens a
+ * {@link TextBlockWriter} over an in-memory buffer and later edits on the
+ * same page keep writing into it. {@link #commit} turns each buffer into
+ * exactly one compressed content stream, so output size and save time
+ * depend on the pages touched rather than on the number of edits.
+ *
+ * Streams written here are marked with /ResumeUpdaterEdit. When a page's
+ * last content stream carries that mark (the resume was edited by this
+ * tool before), the new text is appended to that stream instead of adding
+ * another one. New streams are wrapped the way PDPageContentStream's
+ * APPEND mode does it, with q ahead of the page's own content and Q at
+ * the start of ours, so inserted text starts from the default graphics
+ * state.
+ */
+public class EditSession {
+
+    static final COSName MARKER = COSName.getPDFName("ResumeUpdaterEdit");
+
+    private final PDDocument document;
+    private final DocumentSaver saver;
+    private final Map<PDPage, PageBuffer> pages = new LinkedHashMap<>();
+
+    public EditSession(PDDocument document, DocumentSaver saver) {
+        this.document = document;
+        this.saver = saver;
+    }
+
+    /**
+     * The writer for everything this session adds to the page. Callers
+     * don't close it; commit does.
+     */
+    public TextBlockWriter writer(PDPage page) throws IOException {
+        PageBuffer buffer = pages.get(page);
+        if (buffer == null) {
+            buffer = new PageBuffer(page);
+            pages.put(page, buffer);
+        }
+        return buffer.writer;
+    }
+
+    public int getPendingPageCount() {
+        return pages.size();
+    }
+
+    /**
+     * Write every buffered page into the document and start over
+     */
+    public void commit() throws IOException {
+        try {
+            for (PageBuffer buffer : pages.values()) {
+                buffer.writer.close();
+                byte[] operators = buffer.bytes.toByteArray();
+                if (operators.length > 0) {
+                    write(buffer.page, operators);
+                }
+            }
+        } finally {
+            pages.clear();
+        }
+    }
+
+    /**
+     * Drop everything buffered since the last commit
+     */
+    public void discard() {
+        pages.clear();
+    }
+
+    private void write(PDPage page, byte[] operators) throws IOException {
+        COSDictionary pageDict = page.getCOSObject();
+        COSBase contents = pageDict.getDictionaryObject(COSName.CONTENTS);
+
+        COSStream last = null;
+        if (contents instanceof COSStream) {
+            last = (COSStream) contents;
+        } else if (contents instanceof COSArray && ((COSArray) contents).size() > 0) {
+            COSBase tail = ((COSArray) contents).getObject(((COSArray) contents).size() - 1);
+            last = tail instanceof COSStream ? (COSStream) tail : null;
+        }
+
+        if (last != null && last.getBoolean(MARKER, false)) {
+            byte[] existing;
+            try (InputStream in = last.createInputStream()) {
+                existing = in.readAllBytes();
+            }
+            fill(saver, last, existing, operators);
+            saver.markChanged(last);
+            saver.markChanged(page);
+            return;
+        }
+
+        COSArray array;
+        if (contents instanceof COSArray) {
+            array = (COSArray) contents;
+        } else {
+            array = new COSArray();
+            if (contents instanceof COSStream) {
+                array.add(contents);
+            }
+            pageDict.setItem(COSName.CONTENTS, array);
+        }
+
+        COSStream save = document.getDocument().createCOSStream();
+        try (OutputStream out = save.createOutputStream()) {
+            out.write(ascii("q\n"));
+        }
+        COSStream ours = document.getDocument().createCOSStream();
+        ours.setBoolean(MARKER, true);
+        fill(saver, ours, ascii("Q\n"), operators);
+
+        array.add(0, save);
+        array.add(ours);
+        saver.markChanged(page);
+    }
+
+    private static void fill(DocumentSaver saver, COSStream stream,
+                             byte[] head, byte[] tail) throws IOException {
+        try (OutputStream out = saver.openContent(stream)) {
+            out.write(head);
+            if (head.length > 0 && head[head.length - 1] != '\n') {
+                out.write('\n');
+            }
+            out.write(tail);
+        }
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Operators buffered for one page. They are written through a
+     * throwaway form that shares the page's resources, so fonts used by
+     * the new text are registered on the page itself.
+     */
+    private class PageBuffer {
+        final PDPage page;
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final TextBlockWriter writer;
+
+        PageBuffer(PDPage page) throws IOException {
+            this.page = page;
+            PDResources resources = page.getResources();
+            if (resources == null) {
+                resources = new PDResources();
+                page.setResources(resources);
+            }
+            PDFormXObject form = new PDFormXObject(new COSStream());
+            form.setResources(resources);
+            this.writer = new TextBlockWriter(new PDPageContentStream(document, form, bytes));
+        }
+    }
+}
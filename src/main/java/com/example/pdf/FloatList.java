@@ -0,0 +1,51 @@
+package com.example.pdf;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive floats, so per-glyph coordinates don't get
+ * boxed one object at a time
+ */
+final class FloatList {
+    private float[] values;
+    private int size;
+
+    FloatList() {
+        this(256);
+    }
+
+    FloatList(int capacity) {
+        values = new float[Math.max(1, capacity)];
+    }
+
+    void add(float value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    float get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+        return values[index];
+    }
+
+    int size() { return size; }
+    boolean isEmpty() { return size == 0; }
+
+    /**
+     * Empty the list, keeping its capacity
+     */
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * Sort ascending in place, ordered like Float.compareTo
+     */
+    void sort() {
+        Arrays.sort(values, 0, size);
+    }
+}
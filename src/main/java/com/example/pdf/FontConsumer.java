@@ -0,0 +1,33 @@
+package com.example.pdf;
+
+import org.apache.pdfbox.pdmodel.font.PDFont;
+
+import java.util.*;
+
+/**
+ * Tallies glyphs per (font, size) so callers can pick body and heading fonts
+ */
+class FontConsumer implements AnalysisConsumer {
+    private final Map<PDFont, Map<Float, int[]>> counts = new LinkedHashMap<>();
+
+    @Override
+    public void textRun(TextRun run) {
+        PDFont font = run.getFont();
+        if (font == null) return;
+        int[] count = counts.computeIfAbsent(font, f -> new LinkedHashMap<>())
+                            .computeIfAbsent(run.getFontSizeInPt(), s -> new int[1]);
+        count[0] += run.getGlyphCount();
+    }
+
+    @Override
+    public void contribute(DocumentModel.Builder model) {
+        List<DocumentModel.FontUsage> usages = new ArrayList<>();
+        for (Map.Entry<PDFont, Map<Float, int[]>> font : counts.entrySet()) {
+            for (Map.Entry<Float, int[]> size : font.getValue().entrySet()) {
+                usages.add(new DocumentModel.FontUsage(
+                    font.getKey(), size.getKey(), size.getValue()[0]));
+            }
+        }
+        model.setFontUsages(usages);
+    }
+}
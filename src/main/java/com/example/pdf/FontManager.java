@@ -0,0 +1,95 @@
+package com.example.pdf;
+
+import org.apache.pdfbox.pdmodel.*;
+import org.apache.pdfbox.pdmodel.font.*;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Finds the document's body and heading fonts from how much text each
+ * one sets, and hands out fonts that can draw a given piece of new text
+ */
+class FontManager {
+    private PDFont regularFont = PDType1Font.HELVETICA;
+    private PDFont boldFont = PDType1Font.HELVETICA_BOLD;
+    private float baseFontSize = 11f;
+    private FontResolver resolver;
+    
+    /**
+     * Fallback fonts for the analysed document
+     */
+    public FontResolver getResolver() {
+        return resolver;
+    }
+    
+    public void extractFonts(PDDocument doc) throws IOException {
+        extractFonts(doc, new DocumentAnalyzer()
+            .addConsumer(new FontConsumer())
+            .analyze(doc));
+    }
+    
+    public void extractFonts(PDDocument doc, DocumentModel model) {
+        resolver = new FontResolver(doc);
+        List<DocumentModel.FontUsage> usages = model.getFontUsages();
+        if (usages.isEmpty()) {
+            // No text to learn from; keep the standard fonts
+            return;
+        }
+        
+        // Body text: the font and size setting the most glyphs
+        DocumentModel.FontUsage body = usages.get(0);
+        for (DocumentModel.FontUsage usage : usages) {
+            if (usage.getGlyphCount() > body.getGlyphCount()) body = usage;
+        }
+        regularFont = body.getFont();
+        baseFontSize = body.getFontSize();
+        boldFont = headingFont(usages, body);
+    }
+    
+    // A bold font, same family first; else the busiest larger font; else the body font
+    private static PDFont headingFont(List<DocumentModel.FontUsage> usages,
+                                      DocumentModel.FontUsage body) {
+        String family = FontResolver.family(body.getFont());
+        DocumentModel.FontUsage bold = null;
+        DocumentModel.FontUsage larger = null;
+        for (DocumentModel.FontUsage usage : usages) {
+            if (usage.getFont() == body.getFont()) continue;
+            
+            if (FontResolver.isBold(usage.getFont())) {
+                boolean sameFamily = FontResolver.family(usage.getFont()).equals(family);
+                boolean bestSameFamily = bold != null
+                    && FontResolver.family(bold.getFont()).equals(family);
+                if (bold == null || (sameFamily && !bestSameFamily)
+                        || (sameFamily == bestSameFamily
+                            && usage.getGlyphCount() > bold.getGlyphCount())) {
+                    bold = usage;
+                }
+            } else if (usage.getFontSize() > body.getFontSize()
+                       && (larger == null || usage.getGlyphCount() > larger.getGlyphCount())) {
+                larger = usage;
+            }
+        }
+        if (bold != null) return bold.getFont();
+        if (larger != null) return larger.getFont();
+        return body.getFont();
+    }
+    
+    /**
+     * Body font if it can draw text, otherwise a matching fallback
+     */
+    public PDFont getRegularFont(String text) throws IOException {
+        return resolver != null ? resolver.resolve(regularFont, text) : regularFont;
+    }
+    
+    /**
+     * Heading font if it can draw text, otherwise a matching fallback
+     */
+    public PDFont getBoldFont(String text) throws IOException {
+        return resolver != null ? resolver.resolve(boldFont, text) : boldFont;
+    }
+    
+    public PDFont getRegularFont() { return regularFont; }
+    public PDFont getBoldFont() { return boldFont; }
+    public float getBaseFontSize() { return baseFontSize; }
+}
@@ -0,0 +1,242 @@
+package com.example.pdf;
+
+import org.apache.fontbox.ttf.TTFParser;
+import org.apache.fontbox.ttf.TrueTypeFont;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.*;
+import org.apache.pdfbox.pdmodel.font.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Picks the font new text is drawn with.
+ *
+ * A document's own font is reused when it can encode the text and has a
+ * glyph for every character; embedded subsets usually only carry the
+ * glyphs the original text needed. Otherwise a fallback of the same
+ * family and weight is used: a TrueType file from resume.fonts.dir when
+ * one matches the name, else the closest standard 14 font.
+ *
+ * TrueType files are read through a process-wide cache bounded by
+ * resume.fonts.cacheBytes, so a batch run reads each file from disk once.
+ * Only the bytes are shared: a parsed TrueTypeFont isn't thread-safe, so
+ * each document parses its own copy from memory.
+ */
+public class FontResolver {
+
+    private static final FontFileCache FILES = new FontFileCache(
+        Long.getLong("resume.fonts.cacheBytes", 64L << 20));
+
+    private final PDDocument document;
+    private final Path fontsDir;
+    // Fallbacks already added to this document, so each is embedded once
+    private final Map<String, PDFont> loaded = new HashMap<>();
+    // Font names replaced so far, for the caller to report
+    private final Map<String, String> fallbacks = new LinkedHashMap<>();
+
+    public FontResolver(PDDocument document) {
+        this(document, System.getProperty("resume.fonts.dir") != null
+            ? Paths.get(System.getProperty("resume.fonts.dir")) : null);
+    }
+
+    public FontResolver(PDDocument document, Path fontsDir) {
+        this.document = document;
+        this.fontsDir = fontsDir;
+    }
+
+    /**
+     * The preferred font if it can draw the text, otherwise its fallback
+     */
+    public PDFont resolve(PDFont preferred, String text) throws IOException {
+        if (canEncode(preferred, text)) {
+            return preferred;
+        }
+        PDFont fallback = fallbackFor(preferred, text);
+        if (fallbacks.putIfAbsent(baseName(preferred), baseName(fallback)) == null) {
+            ResumeMetrics.recordFontFallback(fallback instanceof PDType1Font ? "standard" : "file");
+        }
+        return fallback;
+    }
+
+    /**
+     * Fonts that couldn't draw new text, by name, and what was used instead
+     */
+    public Map<String, String> getFallbacks() {
+        return Collections.unmodifiableMap(fallbacks);
+    }
+
+    /**
+     * Whether every character of text encodes and has a glyph in the font
+     */
+    public static boolean canEncode(PDFont font, String text) {
+        // Fonts memoise encodings in plain maps, and standard fonts are shared
+        synchronized (font) {
+            try {
+                byte[] bytes = font.encode(text);
+                if (font instanceof PDVectorFont) {
+                    InputStream in = new ByteArrayInputStream(bytes);
+                    while (in.available() > 0) {
+                        if (!((PDVectorFont) font).hasGlyph(font.readCode(in))) {
+                            return false;
+                        }
+                    }
+                }
+                return true;
+            } catch (IllegalArgumentException | IOException e) {
+                return false;
+            }
+        }
+    }
+
+    private PDFont fallbackFor(PDFont font, String text) throws IOException {
+        String name = baseName(font);
+        boolean bold = isBold(font);
+
+        Path file = findFontFile(name, bold);
+        if (file != null) {
+            PDFont loadedFont = loaded.get(file.toString());
+            if (loadedFont == null) {
+                TrueTypeFont ttf = new TTFParser().parse(
+                    new ByteArrayInputStream(FILES.get(file)));
+                loadedFont = PDType0Font.load(document, ttf, true);
+                loaded.put(file.toString(), loadedFont);
+            }
+            if (canEncode(loadedFont, text)) {
+                return loadedFont;
+            }
+        }
+        return standardFont(name, bold, isItalic(font));
+    }
+
+    // Font files are matched on the full name, then family plus weight
+    private Path findFontFile(String name, boolean bold) throws IOException {
+        if (fontsDir == null || !Files.isDirectory(fontsDir)) return null;
+        Map<String, Path> index = FILES.index(fontsDir);
+
+        String family = name.split("[-,]")[0];
+        for (String key : Arrays.asList(name, family + (bold ? "Bold" : "Regular"), family)) {
+            Path file = index.get(normalize(key));
+            if (file != null) return file;
+        }
+        return null;
+    }
+
+    /**
+     * First font named name in any page's resources, or null
+     */
+    public static PDFont findByName(PDDocument doc, String name) throws IOException {
+        for (PDPage page : doc.getPages()) {
+            PDResources resources = page.getResources();
+            if (resources == null) continue;
+            for (COSName resourceName : resources.getFontNames()) {
+                PDFont font = resources.getFont(resourceName);
+                if (font != null && name.equals(font.getName())) {
+                    return font;
+                }
+            }
+        }
+        return null;
+    }
+
+    static PDType1Font standardFont(String name, boolean bold, boolean italic) {
+        String lower = name.toLowerCase();
+        if (lower.contains("courier") || lower.contains("mono") || lower.contains("consol")) {
+            return bold ? (italic ? PDType1Font.COURIER_BOLD_OBLIQUE : PDType1Font.COURIER_BOLD)
+                        : (italic ? PDType1Font.COURIER_OBLIQUE : PDType1Font.COURIER);
+        }
+        if (lower.contains("times") || lower.contains("georgia") || lower.contains("garamond")
+                || lower.contains("cambria") || (lower.contains("serif") && !lower.contains("sans"))) {
+            return bold ? (italic ? PDType1Font.TIMES_BOLD_ITALIC : PDType1Font.TIMES_BOLD)
+                        : (italic ? PDType1Font.TIMES_ITALIC : PDType1Font.TIMES_ROMAN);
+        }
+        return bold ? (italic ? PDType1Font.HELVETICA_BOLD_OBLIQUE : PDType1Font.HELVETICA_BOLD)
+                    : (italic ? PDType1Font.HELVETICA_OBLIQUE : PDType1Font.HELVETICA);
+    }
+
+    /**
+     * Font name without the ABCDEF+ subset prefix
+     */
+    static String baseName(PDFont font) {
+        String name = font.getName();
+        if (name == null) return "";
+        int plus = name.indexOf('+');
+        return plus == 6 ? name.substring(plus + 1) : name;
+    }
+
+    static boolean isBold(PDFont font) {
+        String lower = baseName(font).toLowerCase();
+        if (lower.contains("bold") || lower.contains("black") || lower.contains("heavy")
+                || lower.contains("semibold") || lower.contains("demi")) {
+            return true;
+        }
+        PDFontDescriptor descriptor = font.getFontDescriptor();
+        return descriptor != null
+            && (descriptor.isForceBold() || descriptor.getFontWeight() >= 600);
+    }
+
+    static boolean isItalic(PDFont font) {
+        String lower = baseName(font).toLowerCase();
+        if (lower.contains("italic") || lower.contains("oblique")) return true;
+        PDFontDescriptor descriptor = font.getFontDescriptor();
+        return descriptor != null && descriptor.isItalic();
+    }
+
+    static String family(PDFont font) {
+        return baseName(font).split("[-,]")[0];
+    }
+
+    private static String normalize(String name) {
+        return name.toLowerCase().replaceAll("[^a-z0-9]", "");
+    }
+
+    /**
+     * Font file bytes by path, least recently used evicted past the byte
+     * limit, plus a name index per fonts directory
+     */
+    static class FontFileCache {
+        private final long maxBytes;
+        private final Map<Path, byte[]> files = new LinkedHashMap<>(16, 0.75f, true);
+        private final Map<Path, Map<String, Path>> indexes = new HashMap<>();
+        private long totalBytes;
+
+        FontFileCache(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        synchronized byte[] get(Path file) throws IOException {
+            byte[] bytes = files.get(file);
+            if (bytes != null) return bytes;
+
+            bytes = Files.readAllBytes(file);
+            files.put(file, bytes);
+            totalBytes += bytes.length;
+
+            Iterator<byte[]> eldest = files.values().iterator();
+            while (totalBytes > maxBytes && files.size() > 1) {
+                totalBytes -= eldest.next().length;
+                eldest.remove();
+            }
+            return bytes;
+        }
+
+        synchronized Map<String, Path> index(Path dir) throws IOException {
+            Map<String, Path> index = indexes.get(dir);
+            if (index != null) return index;
+
+            index = new HashMap<>();
+            try (Stream<Path> paths = Files.list(dir)) {
+                for (Path path : (Iterable<Path>) paths::iterator) {
+                    String file = path.getFileName().toString();
+                    if (file.toLowerCase().endsWith(".ttf")) {
+                        index.put(normalize(file.substring(0, file.length() - 4)), path);
+                    }
+                }
+            }
+            indexes.put(dir, index);
+            return index;
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.example.pdf;
+
+import org.apache.pdfbox.contentstream.PDFStreamEngine;
+import org.apache.pdfbox.contentstream.operator.DrawObject;
+import org.apache.pdfbox.contentstream.operator.state.*;
+import org.apache.pdfbox.contentstream.operator.text.*;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDSimpleFont;
+import org.apache.pdfbox.util.Matrix;
+import org.apache.pdfbox.util.Vector;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads text runs straight from the glyphs a page's content stream shows.
+ *
+ * A leaner source for analysis than PDFTextStripper: it never assembles
+ * the page text, and skips the stripper's overlap suppression, paragraph
+ * and bead handling. Glyphs are joined into runs the way the stripper
+ * joins them into words: same baseline, no gap wider than the stripper's
+ * word spacing unless the previous glyph is a space. Run attributes come
+ * from the first glyph, and coordinates are the stripper's direction
+ * adjusted ones: x along the text direction, y down from the top of the
+ * crop box for upright text.
+ *
+ * Runs are delivered in content-stream order as they end. Sorted mode
+ * holds a page's glyphs back and delivers its runs top to bottom, left
+ * to right, for consumers that need reading order.
+ */
+class GlyphRunReader extends PDFStreamEngine {
+
+    /**
+     * Receives each run; the run is reused, so copy anything kept
+     */
+    interface RunListener {
+        void textRun(TextRun run) throws IOException;
+    }
+
+    // The stripper's word spacing tolerances
+    private static final float SPACING_TOLERANCE = 0.5f;
+    private static final float AVERAGE_CHAR_TOLERANCE = 0.3f;
+
+    private final RunListener listener;
+    private final TextRun run = new TextRun();
+    private boolean sortByPosition;
+
+    // Page being read
+    private int pageIndex;
+    private float originX;
+    private float originY;
+    private float pageWidth;
+    private float pageHeight;
+
+    // Run being built, and the text of the glyph being shown
+    private final StringBuilder chars = new StringBuilder();
+    private final StringBuilder glyphText = new StringBuilder(4);
+    private final FloatList xs = new FloatList(64);
+    private PDFont runFont;
+    private float runSize;
+    private float runY;
+    private float runHeight;
+    private float lastEnd;
+    private float lastCharWidth;
+    private float lastSpaceWidth;
+
+    // A page's glyphs, held back in sorted mode
+    private final PageGlyphs page = new PageGlyphs();
+
+    GlyphRunReader(RunListener listener) {
+        this.listener = listener;
+
+        addOperator(new BeginText());
+        addOperator(new EndText());
+        addOperator(new SetGraphicsStateParameters());
+        addOperator(new Save());
+        addOperator(new Restore());
+        addOperator(new Concatenate());
+        addOperator(new DrawObject());
+        addOperator(new SetCharSpacing());
+        addOperator(new SetFontAndSize());
+        addOperator(new SetTextHorizontalScaling());
+        addOperator(new SetTextLeading());
+        addOperator(new SetTextRenderingMode());
+        addOperator(new SetTextRise());
+        addOperator(new SetWordSpacing());
+        addOperator(new MoveText());
+        addOperator(new MoveTextSetLeading());
+        addOperator(new NextLine());
+        addOperator(new SetMatrix());
+        addOperator(new ShowText());
+        addOperator(new ShowTextAdjusted());
+        addOperator(new ShowTextLine());
+        addOperator(new ShowTextLineAndSpace());
+    }
+
+    /**
+     * Deliver each page's runs in reading order instead of stream order
+     */
+    GlyphRunReader setSortByPosition(boolean sort) {
+        this.sortByPosition = sort;
+        return this;
+    }
+
+    /**
+     * Read one page (0-based index) and deliver its runs
+     */
+    void readPage(int index, PDPage pdPage) throws IOException {
+        pageIndex = index;
+        PDRectangle cropBox = pdPage.getCropBox();
+        originX = cropBox.getLowerLeftX();
+        originY = cropBox.getLowerLeftY();
+        pageWidth = cropBox.getWidth();
+        pageHeight = cropBox.getHeight();
+
+        page.clear();
+        processPage(pdPage);
+
+        if (sortByPosition) {
+            page.sort();
+            for (int i = 0; i < page.size(); i++) {
+                int g = page.order[i];
+                add(page.x.get(g), page.y.get(g), page.width.get(g), page.height.get(g),
+                    page.space.get(g), page.fonts.get(g), page.size.get(g),
+                    page.chars, page.start[g], page.start[g + 1]);
+            }
+        }
+        flush();
+    }
+
+    @Override
+    protected void showGlyph(Matrix textRenderingMatrix, PDFont font, int code,
+                             Vector displacement) throws IOException {
+        String unicode = font.toUnicode(code);
+        StringBuilder target = sortByPosition ? page.chars : glyphText;
+        int start = sortByPosition ? page.chars.length() : 0;
+        glyphText.setLength(0);
+        if (unicode != null) {
+            target.append(unicode);
+        } else if (font instanceof PDSimpleFont) {
+            target.append((char) code);
+        } else {
+            return; // Nothing to read for this glyph, as in the stripper
+        }
+
+        float scaleX = textRenderingMatrix.getScalingFactorX();
+        float tx = textRenderingMatrix.getTranslateX() - originX;
+        float ty = textRenderingMatrix.getTranslateY() - originY;
+        float x;
+        float y;
+        switch (direction(textRenderingMatrix)) {
+            case 90:  x = ty;              y = tx;              break;
+            case 180: x = pageWidth - tx;  y = ty;              break;
+            case 270: x = pageHeight - ty; y = pageWidth - tx;  break;
+            default:  x = tx;              y = pageHeight - ty; break;
+        }
+        float width = displacement.getX() * scaleX;
+        float height = Math.abs(textRenderingMatrix.getScalingFactorY());
+        float space = spaceWidth(font) * scaleX;
+        float size = (int) (getGraphicsState().getTextState().getFontSize()
+                            * getTextMatrix().getScalingFactorX());
+
+        if (sortByPosition) {
+            page.add(x, y, width, height, space, font, size, start);
+        } else {
+            add(x, y, width, height, space, font, size, glyphText, 0, glyphText.length());
+        }
+    }
+
+    // Extend the current run with a glyph, or end it and start another
+    private void add(float x, float y, float width, float height, float space,
+                     PDFont font, float size, CharSequence text, int start, int end)
+            throws IOException {
+        int count = end - start;
+        float charWidth = count > 0 ? width / count : width;
+
+        if (xs.size() > 0 && !continuesRun(x, y, height, charWidth, space)) {
+            flush();
+        }
+        if (xs.size() == 0) {
+            runFont = font;
+            runSize = size;
+            runY = y;
+            runHeight = height;
+        }
+        chars.append(text, start, end);
+        xs.add(x);
+        lastEnd = x + width;
+        lastCharWidth = charWidth;
+        lastSpaceWidth = space;
+    }
+
+    private boolean continuesRun(float x, float y, float height, float charWidth, float space) {
+        // Another line
+        if (Math.abs(y - runY) > 0.3f * Math.min(height, runHeight)) return false;
+        // Drawn back over the run
+        if (x < lastEnd - Math.min(height, runHeight)) return false;
+        // A real space already separates the words
+        if (chars.length() > 0 && chars.charAt(chars.length() - 1) == ' ') return true;
+
+        float deltaSpace = space > 0 && lastSpaceWidth > 0
+            ? (space + lastSpaceWidth) / 2 * SPACING_TOLERANCE : Float.MAX_VALUE;
+        float deltaChar = (charWidth + lastCharWidth) / 2 * AVERAGE_CHAR_TOLERANCE;
+        return x <= lastEnd + Math.min(deltaSpace, deltaChar);
+    }
+
+    private void flush() throws IOException {
+        if (xs.size() == 0) return;
+        run.reset(pageIndex, chars, runFont, runSize, runY, xs);
+        listener.textRun(run);
+        chars.setLength(0);
+        xs.clear();
+    }
+
+    // Which way the glyph's baseline runs, as TextPosition.getDir decides it
+    private static int direction(Matrix m) {
+        float a = m.getValue(0, 0);
+        float b = m.getValue(0, 1);
+        float c = m.getValue(1, 0);
+        float d = m.getValue(1, 1);
+        if (a > 0 && Math.abs(b) < d && Math.abs(c) < a && d > 0) return 0;
+        if (a < 0 && Math.abs(b) < Math.abs(d) && Math.abs(c) < Math.abs(a) && d < 0) return 180;
+        if (Math.abs(a) < Math.abs(c) && b > 0 && Math.abs(d) < b && c < 0) return 90;
+        if (Math.abs(a) < c && b < 0 && Math.abs(d) < Math.abs(b) && c > 0) return 270;
+        return 0;
+    }
+
+    // Width of a space in text space, like the stripper's estimate
+    private static float spaceWidth(PDFont font) {
+        try {
+            float width = font.getSpaceWidth();
+            if (width <= 0) width = font.getAverageFontWidth();
+            return width * font.getFontMatrix().getScaleX();
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Glyphs of one page in primitive columns, with a reading order
+     */
+    private static class PageGlyphs {
+        final FloatList x = new FloatList();
+        final FloatList y = new FloatList();
+        final FloatList width = new FloatList();
+        final FloatList height = new FloatList();
+        final FloatList space = new FloatList();
+        final FloatList size = new FloatList();
+        final List<PDFont> fonts = new ArrayList<>();
+        final StringBuilder chars = new StringBuilder();
+        int[] start = new int[257];
+        int[] order = new int[0];
+        private long[] keys = new long[0];
+
+        int size() { return x.size(); }
+
+        void clear() {
+            x.clear();
+            y.clear();
+            width.clear();
+            height.clear();
+            space.clear();
+            size.clear();
+            fonts.clear();
+            chars.setLength(0);
+        }
+
+        void add(float gx, float gy, float gWidth, float gHeight, float gSpace,
+                 PDFont font, float gSize, int charStart) {
+            int g = size();
+            if (g + 2 > start.length) {
+                start = Arrays.copyOf(start, start.length * 2);
+            }
+            start[g] = charStart;
+            start[g + 1] = chars.length();
+            x.add(gx);
+            y.add(gy);
+            width.add(gWidth);
+            height.add(gHeight);
+            space.add(gSpace);
+            size.add(gSize);
+            fonts.add(font);
+        }
+
+        /**
+         * Order glyphs by line, top to bottom, then left to right. A glyph
+         * joins the current line while its baseline is within 30% of its
+         * own or the line's first glyph height, whichever is smaller.
+         */
+        void sort() {
+            int n = size();
+            if (order.length < n) {
+                order = new int[n];
+                keys = new long[n];
+            }
+            for (int g = 0; g < n; g++) keys[g] = key(y.get(g), g);
+            Arrays.sort(keys, 0, n);
+
+            int lineStart = 0;
+            float lineY = 0;
+            float lineHeight = 0;
+            for (int i = 0; i < n; i++) {
+                int g = (int) keys[i];
+                float gy = y.get(g);
+                if (i > lineStart && gy - lineY > 0.3f * Math.min(lineHeight, height.get(g))) {
+                    sortLine(lineStart, i);
+                    lineStart = i;
+                }
+                if (i == lineStart) {
+                    lineY = gy;
+                    lineHeight = height.get(g);
+                }
+                order[i] = g;
+            }
+            sortLine(lineStart, n);
+        }
+
+        private void sortLine(int from, int to) {
+            for (int i = from; i < to; i++) keys[i] = key(x.get(order[i]), order[i]);
+            Arrays.sort(keys, from, to);
+            for (int i = from; i < to; i++) order[i] = (int) keys[i];
+        }
+
+        // A float and an index packed so longs sort like the floats
+        private static long key(float value, int index) {
+            int bits = Float.floatToIntBits(value);
+            bits ^= (bits >> 31) & 0x7fffffff;
+            return ((long) bits << 32) | index;
+        }
+    }
+}
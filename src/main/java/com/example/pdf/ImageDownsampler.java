@@ -0,0 +1,486 @@
+package com.example.pdf;
+
+import org.apache.pdfbox.contentstream.PDFStreamEngine;
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.contentstream.operator.OperatorProcessor;
+import org.apache.pdfbox.contentstream.operator.state.*;
+import org.apache.pdfbox.cos.*;
+import org.apache.pdfbox.io.ScratchFile;
+import org.apache.pdfbox.pdmodel.*;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.pdmodel.graphics.PDXObject;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.pdfbox.util.Matrix;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Output stage that shrinks images drawn at a much higher resolution
+ * than their placed size needs.
+ *
+ * Every page is walked, forms included, to find the largest size each
+ * image XObject is drawn at. Images whose resolution at that size is
+ * more than 1.5 times the target DPI are scaled down to the target and
+ * re-encoded: as JPEG when they were JPEG or have many colours (photos),
+ * otherwise as Flate (logos, icons, line art). An image is only replaced
+ * when the result is smaller.
+ *
+ * Only plain 8-bit gray and RGB images are touched; stencil masks, colour
+ * key masks, Decode arrays, CMYK, indexed and JPEG 2000 images are left
+ * alone. Soft masks are kept as they are, since a soft mask may have a
+ * resolution of its own. Samples are decoded as Device colours and
+ * written back under the image's own colour space, so ICC-based images
+ * keep their profile.
+ *
+ * Encoded bytes are read and the replacements stored on the calling
+ * thread; decoding, scaling and encoding run on a shared pool. Decoded
+ * images are held under one memory budget for the whole process, so a
+ * few large photos never decode all at once, however many documents are
+ * being saved. An image that fails to decode or encode is left as it is
+ * and counted in the {@link Result}.
+ *
+ * Off unless resume.images.dpi is set. resume.images.memoryMb bounds the
+ * decoded pixels in flight (default 256) and resume.images.jpegQuality
+ * sets the JPEG quality (default 0.8).
+ */
+public class ImageDownsampler {
+
+    /**
+     * Images considered, replaced and failed, and the encoded bytes saved
+     */
+    public static class Result {
+        public final int images;
+        public final int downsampled;
+        public final int failed;
+        public final long bytesBefore;
+        public final long bytesAfter;
+
+        Result(int images, int downsampled, int failed, long bytesBefore, long bytesAfter) {
+            this.images = images;
+            this.downsampled = downsampled;
+            this.failed = failed;
+            this.bytesBefore = bytesBefore;
+            this.bytesAfter = bytesAfter;
+        }
+
+        public long getBytesSaved() { return bytesBefore - bytesAfter; }
+
+        @Override
+        public String toString() {
+            return String.format("%d of %d images downsampled, %,d bytes saved%s",
+                                 downsampled, images, getBytesSaved(),
+                                 failed > 0 ? ", " + failed + " could not be decoded" : "");
+        }
+    }
+
+    // Downsample only clearly oversized images, not ones just above the target
+    private static final float THRESHOLD = 1.5f;
+    // Images with more distinct colours than this are treated as photos
+    private static final int PHOTO_COLOURS = 256;
+
+    private static final ExecutorService POOL = Executors.newFixedThreadPool(
+        Runtime.getRuntime().availableProcessors(), task -> {
+            Thread thread = new Thread(task, "image-downsampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    // Decoded pixel KB in flight, shared by every document like the pool
+    private static final int MEMORY_BUDGET = (int) Math.max(1, Math.min(Integer.MAX_VALUE,
+        Long.getLong("resume.images.memoryMb", 256) << 10));
+    private static final Semaphore MEMORY = new Semaphore(MEMORY_BUDGET);
+
+    private final float targetDpi;
+    private float jpegQuality = 0.8f;
+
+    public ImageDownsampler(float targetDpi) {
+        this.targetDpi = targetDpi;
+    }
+
+    /**
+     * Downsampler for resume.images.dpi, or null when that is unset
+     */
+    public static ImageDownsampler fromSystemProperties() {
+        String dpi = System.getProperty("resume.images.dpi");
+        if (dpi == null) {
+            return null;
+        }
+        ImageDownsampler downsampler = new ImageDownsampler(Float.parseFloat(dpi));
+        String quality = System.getProperty("resume.images.jpegQuality");
+        if (quality != null) {
+            downsampler.setJpegQuality(Float.parseFloat(quality));
+        }
+        return downsampler;
+    }
+
+    public ImageDownsampler setJpegQuality(float quality) {
+        this.jpegQuality = quality;
+        return this;
+    }
+
+    public float getTargetDpi() { return targetDpi; }
+
+    /**
+     * Downsample the document's oversized images in place, flagging each
+     * replaced stream with the saver
+     */
+    public Result process(PDDocument document, DocumentSaver saver) throws IOException {
+        Map<COSStream, Placement> placements = new LinkedHashMap<>();
+        PlacementFinder finder = new PlacementFinder(placements);
+        for (PDPage page : document.getPages()) {
+            finder.processPage(page);
+        }
+
+        List<Job> jobs = new ArrayList<>();
+        for (Placement placement : placements.values()) {
+            Job job = prepare(placement);
+            if (job != null) jobs.add(job);
+        }
+
+        List<Future<byte[]>> futures = new ArrayList<>(jobs.size());
+        for (Job job : jobs) {
+            futures.add(POOL.submit(job));
+        }
+
+        int downsampled = 0;
+        int failed = 0;
+        long before = 0;
+        long after = 0;
+        for (int i = 0; i < jobs.size(); i++) {
+            Job job = jobs.get(i);
+            byte[] encoded;
+            try {
+                encoded = join(futures.get(i));
+            } catch (ExecutionException e) {
+                // A broken image is left as it is
+                encoded = null;
+                failed++;
+            }
+            before += job.encoded.length;
+            if (encoded == null || encoded.length >= job.encoded.length) {
+                after += job.encoded.length;
+                continue;
+            }
+            job.store(encoded);
+            saver.markChanged(job.stream);
+            after += encoded.length;
+            downsampled++;
+        }
+        return new Result(placements.size(), downsampled, failed, before, after);
+    }
+
+    // A job for an image worth downsampling, with its encoded bytes read
+    private Job prepare(Placement placement) throws IOException {
+        COSStream stream = placement.stream;
+        int width = stream.getInt(COSName.WIDTH);
+        int height = stream.getInt(COSName.HEIGHT);
+        if (width <= 0 || height <= 0 || placement.width <= 0 || placement.height <= 0) {
+            return null;
+        }
+
+        // Pixels the largest placement needs at the target resolution
+        int targetWidth = Math.max(1, Math.round(placement.width / 72 * targetDpi));
+        int targetHeight = Math.max(1, Math.round(placement.height / 72 * targetDpi));
+        if (width <= targetWidth * THRESHOLD && height <= targetHeight * THRESHOLD) {
+            return null;
+        }
+        targetWidth = Math.min(targetWidth, width);
+        targetHeight = Math.min(targetHeight, height);
+
+        COSName deviceSpace = deviceSpace(stream);
+        if (deviceSpace == null
+                || stream.getInt(COSName.BITS_PER_COMPONENT) != 8
+                || stream.getBoolean(COSName.IMAGE_MASK, false)
+                || stream.getItem(COSName.MASK) != null
+                || stream.getItem(COSName.DECODE) != null) {
+            return null;
+        }
+        COSBase filters = stream.getFilters();
+        boolean jpeg = COSName.DCT_DECODE.equals(filters);
+        if (filters != null && !jpeg && !COSName.FLATE_DECODE.equals(filters)) {
+            return null;
+        }
+
+        byte[] encoded;
+        try (InputStream in = stream.createRawInputStream()) {
+            encoded = in.readAllBytes();
+        }
+        return new Job(stream, deviceSpace, encoded, width, height,
+                       targetWidth, targetHeight, jpeg);
+    }
+
+    // The Device space an image's samples can be decoded in, if it is gray or RGB
+    private static COSName deviceSpace(COSStream stream) {
+        COSBase space = stream.getDictionaryObject(COSName.COLORSPACE, COSName.CS);
+        if (COSName.DEVICERGB.equals(space) || COSName.DEVICEGRAY.equals(space)) {
+            return (COSName) space;
+        }
+        if (space instanceof COSArray && ((COSArray) space).size() == 2
+                && COSName.ICCBASED.equals(((COSArray) space).getObject(0))
+                && ((COSArray) space).getObject(1) instanceof COSStream) {
+            int components = ((COSStream) ((COSArray) space).getObject(1)).getInt(COSName.N);
+            if (components == 3) return COSName.DEVICERGB;
+            if (components == 1) return COSName.DEVICEGRAY;
+        }
+        return null;
+    }
+
+    private static byte[] join(Future<byte[]> future) throws IOException, ExecutionException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while downsampling images");
+        }
+    }
+
+    /**
+     * One image: decoded from a private copy of its bytes, scaled and
+     * encoded on the pool
+     */
+    private class Job implements Callable<byte[]> {
+        final COSStream stream;
+        final COSName deviceSpace;
+        final byte[] encoded;
+        final int width;
+        final int height;
+        final int targetWidth;
+        final int targetHeight;
+        final boolean wasJpeg;
+        boolean writeJpeg;
+
+        Job(COSStream stream, COSName deviceSpace, byte[] encoded, int width, int height,
+            int targetWidth, int targetHeight, boolean wasJpeg) {
+            this.stream = stream;
+            this.deviceSpace = deviceSpace;
+            this.encoded = encoded;
+            this.width = width;
+            this.height = height;
+            this.targetWidth = targetWidth;
+            this.targetHeight = targetHeight;
+            this.wasJpeg = wasJpeg;
+        }
+
+        @Override
+        public byte[] call() throws IOException, InterruptedException {
+            // Source and scaled pixels, at 4 bytes each, in KB
+            int permits = (int) Math.min(MEMORY_BUDGET,
+                ((long) width * height + (long) targetWidth * targetHeight) * 4 >> 10);
+            permits = Math.max(1, permits);
+            MEMORY.acquire(permits);
+            try {
+                BufferedImage scaled = scale(rgb(decode()));
+                writeJpeg = wasJpeg || isPhoto(scaled);
+                return writeJpeg ? jpeg(output(scaled)) : flate(scaled);
+            } finally {
+                MEMORY.release(permits);
+            }
+        }
+
+        // Decode from a detached stream, so no document state is shared across threads
+        private BufferedImage decode() throws IOException {
+            COSStream copy = new COSStream(ScratchFile.getMainMemoryOnlyInstance());
+            for (COSName key : Arrays.asList(COSName.WIDTH, COSName.HEIGHT,
+                                             COSName.BITS_PER_COMPONENT, COSName.FILTER,
+                                             COSName.DECODE_PARMS)) {
+                COSBase value = stream.getDictionaryObject(key);
+                if (value != null) copy.setItem(key, value);
+            }
+            copy.setItem(COSName.COLORSPACE, deviceSpace);
+            try (OutputStream out = copy.createRawOutputStream()) {
+                out.write(encoded);
+            }
+            return new PDImageXObject(new PDStream(copy), null).getImage();
+        }
+
+        // Samples as RGB, gray copied into every channel rather than colour converted
+        private BufferedImage rgb(BufferedImage image) {
+            if (image.getType() == BufferedImage.TYPE_INT_RGB) {
+                return image;
+            }
+            int w = image.getWidth();
+            int h = image.getHeight();
+            BufferedImage rgb = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+            if (image.getRaster().getNumBands() == 1) {
+                int[] row = new int[w];
+                for (int y = 0; y < h; y++) {
+                    image.getRaster().getSamples(0, y, w, 1, 0, row);
+                    for (int x = 0; x < w; x++) {
+                        row[x] = row[x] * 0x010101;
+                    }
+                    rgb.setRGB(0, y, w, 1, row, 0, w);
+                }
+            } else {
+                Graphics2D g = rgb.createGraphics();
+                g.drawImage(image, 0, 0, null);
+                g.dispose();
+            }
+            return rgb;
+        }
+
+        // The image to encode: gray images go back to one channel
+        private BufferedImage output(BufferedImage rgb) {
+            if (!COSName.DEVICEGRAY.equals(deviceSpace)) {
+                return rgb;
+            }
+            int w = rgb.getWidth();
+            int h = rgb.getHeight();
+            BufferedImage gray = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_GRAY);
+            int[] row = new int[w];
+            for (int y = 0; y < h; y++) {
+                rgb.getRGB(0, y, w, 1, row, 0, w);
+                for (int x = 0; x < w; x++) {
+                    row[x] &= 0xff;
+                }
+                gray.getRaster().setSamples(0, y, w, 1, 0, row);
+            }
+            return gray;
+        }
+
+        private BufferedImage scale(BufferedImage source) {
+            // Halve with bilinear filtering while far from the target, so every source pixel counts
+            BufferedImage current = source;
+            int w = source.getWidth();
+            int h = source.getHeight();
+            do {
+                w = Math.max(targetWidth, w / 2);
+                h = Math.max(targetHeight, h / 2);
+                BufferedImage next = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+                Graphics2D g = next.createGraphics();
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                                   RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(current, 0, 0, w, h, null);
+                g.dispose();
+                current = next;
+            } while (w > targetWidth || h > targetHeight);
+            return current;
+        }
+
+        private boolean isPhoto(BufferedImage image) {
+            Set<Integer> colours = new HashSet<>();
+            int stepX = Math.max(1, image.getWidth() / 64);
+            int stepY = Math.max(1, image.getHeight() / 64);
+            for (int y = 0; y < image.getHeight(); y += stepY) {
+                for (int x = 0; x < image.getWidth(); x += stepX) {
+                    colours.add(image.getRGB(x, y));
+                    if (colours.size() > PHOTO_COLOURS) return true;
+                }
+            }
+            return false;
+        }
+
+        private byte[] jpeg(BufferedImage image) throws IOException {
+            ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ImageOutputStream out = ImageIO.createImageOutputStream(bytes)) {
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(jpegQuality);
+                writer.setOutput(out);
+                writer.write(null, new IIOImage(image, null, null), param);
+            } finally {
+                writer.dispose();
+            }
+            return bytes.toByteArray();
+        }
+
+        private byte[] flate(BufferedImage image) {
+            boolean gray = COSName.DEVICEGRAY.equals(deviceSpace);
+            int w = image.getWidth();
+            int h = image.getHeight();
+            byte[] samples = new byte[w * h * (gray ? 1 : 3)];
+            int i = 0;
+            int[] row = new int[w];
+            for (int y = 0; y < h; y++) {
+                image.getRGB(0, y, w, 1, row, 0, w);
+                for (int rgb : row) {
+                    if (gray) {
+                        samples[i++] = (byte) rgb;
+                    } else {
+                        samples[i++] = (byte) (rgb >> 16);
+                        samples[i++] = (byte) (rgb >> 8);
+                        samples[i++] = (byte) rgb;
+                    }
+                }
+            }
+
+            return StreamCompressor.deflate(samples, StreamCompressor.Level.MAX);
+        }
+
+        // Replace the image's data, keeping its colour space and soft mask
+        void store(byte[] data) throws IOException {
+            try (OutputStream out = stream.createRawOutputStream()) {
+                out.write(data);
+            }
+            stream.setInt(COSName.WIDTH, targetWidth);
+            stream.setInt(COSName.HEIGHT, targetHeight);
+            stream.setInt(COSName.BITS_PER_COMPONENT, 8);
+            stream.setItem(COSName.FILTER, writeJpeg ? COSName.DCT_DECODE : COSName.FLATE_DECODE);
+            stream.removeItem(COSName.DECODE_PARMS);
+        }
+    }
+
+    /**
+     * Largest size, in points, an image is drawn at anywhere in the document
+     */
+    private static class Placement {
+        final COSStream stream;
+        float width;
+        float height;
+
+        Placement(COSStream stream) {
+            this.stream = stream;
+        }
+    }
+
+    /**
+     * Follows the CTM through pages and forms and records where each image is drawn
+     */
+    private static class PlacementFinder extends PDFStreamEngine {
+        private final Map<COSStream, Placement> placements;
+
+        PlacementFinder(Map<COSStream, Placement> placements) {
+            this.placements = placements;
+            addOperator(new Save());
+            addOperator(new Restore());
+            addOperator(new Concatenate());
+            addOperator(new DrawXObject());
+        }
+
+        private class DrawXObject extends OperatorProcessor {
+            @Override
+            public void process(Operator operator, List<COSBase> operands) throws IOException {
+                if (operands.isEmpty() || !(operands.get(0) instanceof COSName)) return;
+                PDResources resources = getResources();
+                if (resources == null) return;
+                PDXObject xobject = resources.getXObject((COSName) operands.get(0));
+                if (xobject instanceof PDImageXObject) {
+                    COSStream stream = ((PDImageXObject) xobject).getCOSObject();
+                    Matrix ctm = getGraphicsState().getCurrentTransformationMatrix();
+                    Placement placement = placements.computeIfAbsent(stream, Placement::new);
+                    placement.width = Math.max(placement.width, Math.abs(ctm.getScalingFactorX()));
+                    placement.height = Math.max(placement.height, Math.abs(ctm.getScalingFactorY()));
+                } else if (xobject instanceof PDFormXObject) {
+                    showForm((PDFormXObject) xobject);
+                }
+            }
+
+            @Override
+            public String getName() {
+                return "Do";
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.pdf;
+
+import org.apache.pdfbox.pdmodel.*;
+
+import java.io.*;
+import java.util.*;
+
+class LayoutAnalyzer {
+    private String layoutType;
+    private int columnCount;
+    private List<ColumnInfo> columns;
+    private float contentWidth;
+    
+    public LayoutAnalyzer() {
+        columns = new ArrayList<>();
+    }
+    
+    public void analyze(PDDocument doc) throws IOException {
+        apply(new DocumentAnalyzer()
+            .addConsumer(new ColumnConsumer())
+            .setPageRange(1, 1)
+            .analyze(doc));
+    }
+    
+    /**
+     * Take the column layout from an already analysed document
+     */
+    public void apply(DocumentModel model) {
+        layoutType = model.getLayoutType();
+        columnCount = model.getColumnCount();
+        columns = new ArrayList<>(model.getColumns());
+        contentWidth = model.getContentWidth();
+    }
+    
+    public String getLayoutType() { return layoutType; }
+    public int getColumnCount() { return columnCount; }
+    public float getContentWidth() { return contentWidth; }
+    
+    public ColumnInfo getMainColumn() {
+        if (columns.size() <= 1) return columns.isEmpty() ? null : columns.get(0);
+        // Return wider column
+        return columns.get(0).width() > columns.get(1).width() ? 
+               columns.get(0) : columns.get(1);
+    }
+    
+    static class ColumnInfo {
+        float startX, endX;
+        
+        public ColumnInfo(float start, float end) {
+            this.startX = start;
+            this.endX = end;
+        }
+        
+        public float width() { return endX - startX; }
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.pdf;
+
+import com.google.gson.Gson;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size-bounded LRU cache of analysed layouts, keyed by
+ * {@link LayoutFingerprint}. Most resumes come from a few dozen templates,
+ * so repeat templates can skip analysis entirely.
+ *
+ * Entries can also be written to a directory as JSON so they survive
+ * restarts. Because a fingerprint ignores the text itself, a sample of
+ * hits can be re-analysed and compared to catch stale entries.
+ */
+public class LayoutCache<V> {
+
+    private static final Gson GSON = new Gson();
+
+    private final Class<V> type;
+    private final Map<String, V> entries;
+    private Path diskStore;
+    private double verifyRate;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong verifications = new AtomicLong();
+    private final AtomicLong staleEntries = new AtomicLong();
+
+    public LayoutCache(Class<V> type, int maxEntries) {
+        this.type = type;
+        this.entries = new LinkedHashMap<String, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Cache configured from resume.layoutCache.* system properties, or
+     * null when resume.layoutCache.size is unset or 0
+     */
+    public static <V> LayoutCache<V> fromSystemProperties(Class<V> type, String name) {
+        int size = Integer.getInteger("resume.layoutCache.size", 0);
+        if (size <= 0) return null;
+
+        LayoutCache<V> cache = new LayoutCache<>(type, size);
+        String dir = System.getProperty("resume.layoutCache.dir");
+        if (dir != null) {
+            cache.setDiskStore(Paths.get(dir, name));
+        }
+        cache.setVerifyRate(Double.parseDouble(
+            System.getProperty("resume.layoutCache.verifyRate", "0.0")));
+        return cache;
+    }
+
+    public LayoutCache<V> setDiskStore(Path dir) {
+        this.diskStore = dir;
+        return this;
+    }
+
+    /**
+     * Fraction of hits (0..1) that are re-analysed and compared
+     */
+    public LayoutCache<V> setVerifyRate(double rate) {
+        this.verifyRate = rate;
+        return this;
+    }
+
+    /**
+     * Cached layout for the fingerprint, or null on a miss
+     */
+    public V get(String fingerprint) {
+        V value;
+        synchronized (entries) {
+            value = entries.get(fingerprint);
+        }
+        if (value == null) {
+            value = readFromDisk(fingerprint);
+            if (value != null) {
+                diskHits.incrementAndGet();
+                synchronized (entries) {
+                    entries.put(fingerprint, value);
+                }
+            }
+        }
+
+        if (value == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return value;
+    }
+
+    public void put(String fingerprint, V value) {
+        synchronized (entries) {
+            entries.put(fingerprint, value);
+        }
+        writeToDisk(fingerprint, value);
+    }
+
+    /**
+     * Whether this hit should be re-analysed to check the entry
+     */
+    public boolean shouldVerify() {
+        return verifyRate > 0 && ThreadLocalRandom.current().nextDouble() < verifyRate;
+    }
+
+    /**
+     * Compare a fresh analysis with the cached value and replace it if stale.
+     * Returns true when the entry was still correct.
+     */
+    public boolean verify(String fingerprint, V cached, V fresh) {
+        verifications.incrementAndGet();
+        if (GSON.toJson(cached).equals(GSON.toJson(fresh))) {
+            return true;
+        }
+        staleEntries.incrementAndGet();
+        put(fingerprint, fresh);
+        return false;
+    }
+
+    private V readFromDisk(String fingerprint) {
+        if (diskStore == null) return null;
+        Path file = diskStore.resolve(fingerprint + ".json");
+        if (!Files.exists(file)) return null;
+
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return GSON.fromJson(reader, type);
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Warning: unreadable layout cache entry " + file);
+            return null;
+        }
+    }
+
+    private void writeToDisk(String fingerprint, V value) {
+        if (diskStore == null) return;
+        try {
+            Files.createDirectories(diskStore);
+            // Write then rename, so concurrent readers never see half an entry
+            Path tmp = Files.createTempFile(diskStore, fingerprint, ".tmp");
+            Files.write(tmp, GSON.toJson(value).getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp, diskStore.resolve(fingerprint + ".json"),
+                       StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("Warning: could not store layout cache entry: " + e.getMessage());
+        }
+    }
+
+    // Metrics
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+    public long getDiskHits() { return diskHits.get(); }
+    public long getVerifications() { return verifications.get(); }
+    public long getStaleEntries() { return staleEntries.get(); }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LayoutCache[%d entries, %d hits (%d from disk), %d misses, "
+                             + "%d verified, %d stale]",
+                             size(), getHits(), getDiskHits(), getMisses(),
+                             getVerifications(), getStaleEntries());
+    }
+}
@@ -1,16 +1,23 @@
 package com.example.pdf;
 
 import org.apache.pdfbox.pdmodel.*;
-import org.apache.pdfbox.text.*;
 import java.io.IOException;
 import java.util.*;
 
 public class LayoutDetector {
     
+    // Shared across documents so repeat templates skip analysis; off unless configured
+    private static final LayoutCache<CachedLayout> DEFAULT_CACHE =
+        LayoutCache.fromSystemProperties(CachedLayout.class, "layout-detector");
+    
     private PDDocument document;
     private LayoutType layoutType;
     private List<ColumnInfo> columns;
     private Map<String, Region> sectionRegions;
+    private LayoutCache<CachedLayout> layoutCache = DEFAULT_CACHE;
+    private boolean lazy = Boolean.getBoolean("resume.analysis.lazy");
+    private LazyDocumentModel pages;
+    private int nextPage;
     
     public enum LayoutType {
         SINGLE_COLUMN,
@@ -26,19 +33,74 @@ public class LayoutDetector {
         this.sectionRegions = new HashMap<>();
     }
     
+    /**
+     * Cache used by {@link #analyze()}; null disables caching
+     */
+    public LayoutDetector setLayoutCache(LayoutCache<CachedLayout> cache) {
+        this.layoutCache = cache;
+        return this;
+    }
+    
+    /**
+     * Strip only the first page in {@link #analyze()} and look for section
+     * regions on later pages when {@link #getInsertionPoint} asks for one,
+     * so the first page holding a section wins. Columns then come from the
+     * first page, and the cache isn't used.
+     */
+    public LayoutDetector setLazy(boolean lazy) {
+        this.lazy = lazy;
+        return this;
+    }
+    
     /**
      * Analyze the PDF layout and detect structure
      */
     public void analyze() throws IOException {
-        PDPage firstPage = document.getPage(0);
-        float pageWidth = firstPage.getMediaBox().getWidth();
+        if (lazy) {
+            pages = new LazyDocumentModel(document, () -> new DocumentAnalyzer()
+                .addConsumer(new TextBlockConsumer()));
+            analyze(pages.page(0));
+            nextPage = 1;
+            return;
+        }
+        pages = null;
+        if (layoutCache == null) {
+            analyzeText();
+            return;
+        }
         
-        // Extract text positions
-        LayoutTextStripper stripper = new LayoutTextStripper();
-        stripper.setSortByPosition(true);
-        stripper.getText(document);
+        String fingerprint = LayoutFingerprint.of(document);
+        CachedLayout cached = layoutCache.get(fingerprint);
+        if (cached != null && !layoutCache.shouldVerify()) {
+            layoutType = cached.layoutType;
+            columns = new ArrayList<>(cached.columns);
+            sectionRegions = new HashMap<>(cached.sectionRegions);
+            System.out.println("Detected layout: " + layoutType + " (cached)");
+            return;
+        }
         
-        List<TextBlock> blocks = stripper.getTextBlocks();
+        analyzeText();
+        CachedLayout fresh = new CachedLayout(layoutType, columns, sectionRegions);
+        if (cached == null) {
+            layoutCache.put(fingerprint, fresh);
+        } else {
+            layoutCache.verify(fingerprint, cached, fresh);
+        }
+    }
+    
+    private void analyzeText() throws IOException {
+        // Extract text positions
+        analyze(new DocumentAnalyzer()
+            .addConsumer(new TextBlockConsumer())
+            .analyze(document));
+    }
+    
+    /**
+     * Detect structure from the text blocks of an already analysed document
+     */
+    public void analyze(DocumentModel model) {
+        float pageWidth = model.getPageWidth(0);
+        List<TextBlock> blocks = model.getTextBlocks();
         
         // Detect columns by clustering X positions
         detectColumns(blocks, pageWidth);
@@ -55,15 +117,15 @@ public class LayoutDetector {
     
     private void detectColumns(List<TextBlock> blocks, float pageWidth) {
         // Cluster text blocks by X position
-        List<Float> xPositions = new ArrayList<>();
+        FloatList xPositions = new FloatList(blocks.size());
         for (TextBlock block : blocks) {
             xPositions.add(block.x);
         }
         
-        Collections.sort(xPositions);
+        xPositions.sort();
         
         // Find column boundaries using gap detection
-        List<Float> columnStarts = new ArrayList<>();
+        FloatList columnStarts = new FloatList(8);
         columnStarts.add(xPositions.get(0));
         
         for (int i = 1; i < xPositions.size(); i++) {
@@ -106,27 +168,23 @@ public class LayoutDetector {
     }
     
     private void mapSectionRegions(List<TextBlock> blocks) {
-        String[] sectionKeywords = {
-            "EXPERIENCE", "EDUCATION", "SKILLS", "CERTIFICATIONS",
-            "PROJECTS", "WORK EXPERIENCE", "TECHNICAL SKILLS",
-            "SUMMARY", "OBJECTIVE", "ACHIEVEMENTS"
-        };
+        SectionVocabulary vocabulary = SectionVocabulary.getDefault();
         
         for (TextBlock block : blocks) {
-            String text = block.text.toUpperCase().trim();
+            if (block.fontSize <= 11) continue;
             
-            for (String keyword : sectionKeywords) {
-                if (text.contains(keyword) && block.fontSize > 11) {
-                    // Found section header
-                    Region region = new Region(
-                        block.x,
-                        block.y,
-                        determineColumnIndex(block.x),
-                        block.pageIndex
-                    );
-                    sectionRegions.put(keyword, region);
-                    break;
-                }
+            // Every section whose header the block contains, so a WORK
+            // EXPERIENCE block answers for both WORK EXPERIENCE and EXPERIENCE
+            BitSet headers = vocabulary.allContained(block.text);
+            if (headers.isEmpty()) continue;
+            Region region = new Region(
+                block.x,
+                block.y,
+                determineColumnIndex(block.x),
+                block.pageIndex
+            );
+            for (int h = headers.nextSetBit(0); h >= 0; h = headers.nextSetBit(h + 1)) {
+                sectionRegions.put(vocabulary.section(h), region);
             }
         }
     }
@@ -143,7 +201,13 @@ public class LayoutDetector {
     /**
      * Get optimal insertion point for new content
      */
-    public InsertionPoint getInsertionPoint(String sectionName) {
+    public InsertionPoint getInsertionPoint(String sectionName) throws IOException {
+        // Lazily, strip further pages only until the section turns up
+        while (pages != null && nextPage < pages.getPageCount()
+               && !sectionRegions.containsKey(sectionName.toUpperCase())) {
+            mapSectionRegions(pages.page(nextPage++).getTextBlocks());
+        }
+        
         Region region = sectionRegions.get(sectionName.toUpperCase());
         if (region == null) {
             // Return default position
@@ -164,6 +228,9 @@ public class LayoutDetector {
     // Getters
     public LayoutType getLayoutType() { return layoutType; }
     public List<ColumnInfo> getColumns() { return columns; }
+    /**
+     * Regions found so far; lazily, only those on the pages stripped yet
+     */
     public Map<String, Region> getSectionRegions() { return sectionRegions; }
     
     // Helper classes 
@@ -202,6 +269,21 @@ public class LayoutDetector {
         }
     }
     
+    /**
+     * Detection results stored in a {@link LayoutCache}
+     */
+    public static class CachedLayout {
+        LayoutType layoutType;
+        List<ColumnInfo> columns;
+        Map<String, Region> sectionRegions;
+        
+        CachedLayout(LayoutType type, List<ColumnInfo> cols, Map<String, Region> regions) {
+            this.layoutType = type;
+            this.columns = new ArrayList<>(cols);
+            this.sectionRegions = new HashMap<>(regions);
+        }
+    }
+    
     public static class InsertionPoint {
         public float x, y;
         public int columnIndex;
@@ -229,40 +311,4 @@ public class LayoutDetector {
             this.pageIndex = page;
         }
     }
-    
-    // Custom stripper to extract text blocks
-    class LayoutTextStripper extends PDFTextStripper {
-        private List<TextBlock> textBlocks = new ArrayList<>();
-        private int currentPage = 0;
-        
-        public LayoutTextStripper() throws IOException {
-            super();
-        }
-        
-        @Override
-        protected void writeString(String text, List<TextPosition> positions) 
-                throws IOException {
-            if (!positions.isEmpty()) {
-                TextPosition first = positions.get(0);
-                textBlocks.add(new TextBlock(
-                    text.trim(),
-                    first.getXDirAdj(),
-                    first.getYDirAdj(),
-                    first.getFontSizeInPt(),
-                    currentPage
-                ));
-            }
-            super.writeString(text, positions);
-        }
-        
-        @Override
-        protected void startPage(PDPage page) throws IOException {
-            currentPage = getCurrentPageNo() - 1;
-            super.startPage(page);
-        }
-        
-        public List<TextBlock> getTextBlocks() {
-            return textBlocks;
-        }
-    }
 }
@@ -0,0 +1,85 @@
+package com.example.pdf;
+
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdfparser.PDFStreamParser;
+import org.apache.pdfbox.pdmodel.*;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Structural fingerprint of a document: page sizes, font resources and a
+ * hash of the content-stream operator skeleton (operators only, no
+ * operands). Resumes built from the same template share a fingerprint
+ * even when their text differs.
+ *
+ * Tokenising the content streams is far cheaper than text extraction,
+ * since no glyphs are decoded or positioned.
+ */
+public final class LayoutFingerprint {
+
+    private LayoutFingerprint() {}
+
+    public static String of(PDDocument doc) throws IOException {
+        MessageDigest digest = newDigest();
+
+        for (PDPage page : doc.getPages()) {
+            PDRectangle mediaBox = page.getMediaBox();
+            update(digest, "page " + mediaBox.getWidth() + "x" + mediaBox.getHeight()
+                           + " r" + page.getRotation());
+
+            // Read BaseFont straight from the dictionaries; loading the
+            // fonts would parse any embedded font programs
+            PDResources resources = page.getResources();
+            COSBase fonts = resources != null
+                ? resources.getCOSObject().getDictionaryObject(COSName.FONT) : null;
+            if (fonts instanceof COSDictionary) {
+                for (COSName name : ((COSDictionary) fonts).keySet()) {
+                    COSBase font = ((COSDictionary) fonts).getDictionaryObject(name);
+                    String baseFont = font instanceof COSDictionary
+                        ? ((COSDictionary) font).getNameAsString(COSName.BASE_FONT) : null;
+                    update(digest, "font " + name.getName() + "=" + baseFont);
+                }
+            }
+
+            if (page.hasContents()) {
+                PDFStreamParser parser = new PDFStreamParser(page);
+                try {
+                    Object token;
+                    while ((token = parser.parseNextToken()) != null) {
+                        if (token instanceof Operator) {
+                            update(digest, ((Operator) token).getName());
+                        }
+                    }
+                } finally {
+                    parser.close();
+                }
+            }
+        }
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) '\n');
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
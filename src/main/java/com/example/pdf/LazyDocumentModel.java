@@ -0,0 +1,64 @@
+package com.example.pdf;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Per-page {@link DocumentModel}s, each computed on first access.
+ *
+ * An edit that touches one section only needs the page holding its
+ * header, so section lookups analyse pages in order and stop at the first
+ * page that has it. Pages already analysed are kept for later lookups.
+ * Where a full pass lets the last duplicate header win, a lookup returns
+ * the first.
+ */
+public class LazyDocumentModel {
+
+    private final PDDocument document;
+    private final Supplier<DocumentAnalyzer> analyzers;
+    private final DocumentModel[] pages;
+    private int analysedPages;
+
+    /**
+     * @param analyzers a fresh engine, with its consumers, for each page
+     */
+    public LazyDocumentModel(PDDocument doc, Supplier<DocumentAnalyzer> analyzers) {
+        this.document = doc;
+        this.analyzers = analyzers;
+        this.pages = new DocumentModel[doc.getNumberOfPages()];
+    }
+
+    public int getPageCount() { return pages.length; }
+    public int getAnalysedPageCount() { return analysedPages; }
+
+    /**
+     * The model of one page (0-based), analysing the page on first access
+     */
+    public DocumentModel page(int pageIndex) throws IOException {
+        if (pages[pageIndex] == null) {
+            pages[pageIndex] = analyzers.get()
+                .setPageRange(pageIndex + 1, pageIndex + 1)
+                .analyze(document);
+            analysedPages++;
+        }
+        return pages[pageIndex];
+    }
+
+    /**
+     * The first section with one of the names, trying the names in order
+     * on each page; null once every page has been analysed without one
+     */
+    public SectionInfo findSection(String... names) throws IOException {
+        for (int i = 0; i < pages.length; i++) {
+            Map<String, SectionInfo> sections = page(i).getSections();
+            for (String name : names) {
+                SectionInfo section = sections.get(name.toUpperCase());
+                if (section != null) return section;
+            }
+        }
+        return null;
+    }
+}
@@ -1,10 +1,11 @@
 package com.example.pdf;
 
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSObjectKey;
 import org.apache.pdfbox.pdmodel.*;
 import org.apache.pdfbox.pdmodel.font.*;
-import org.apache.pdfbox.pdmodel.common.PDRectangle;
-import org.apache.pdfbox.text.PDFTextStripper;
-import org.apache.pdfbox.text.TextPosition;
 import java.io.*;
 import java.util.*;
 
@@ -17,8 +18,19 @@ import java.util.*;
 public class PDFResumeUpdater {
 
     private PDDocument document;
+    private String sourcePath;
+    private DocumentLoader loader = new DocumentLoader();
+    private final DocumentSaver saver = new DocumentSaver();
     private Map<String, SectionInfo> sections;
     private FontInfo defaultFont;
+    private FontResolver fonts;
+    private EditSession session;
+    // Pages in their original order, which section page indexes refer to
+    private List<PDPage> pages;
+    private final Map<PDPage, ContentShifter> shifters = new LinkedHashMap<>();
+    // Height already inserted under each section, so entries stack
+    private final Map<String, Float> insertedHeight = new HashMap<>();
+    private int analysisParallelism = Integer.getInteger("resume.analysis.parallelism", 1);
 
     public static void main(String[] args) {
         if (args.length < 2) {
@@ -47,6 +59,8 @@ public class PDFResumeUpdater {
             updater.addCertification("AWS Certified Solutions Architect - Associate (2024)");
 
             updater.savePDF(args[1]);
+            updater.getFontFallbacks().forEach((font, fallback) -> System.out.println(
+                "  Font " + font + " can't draw the new text, used " + fallback));
             System.out.println("Resume updated successfully!");
 
         } catch (Exception e) {
@@ -54,24 +68,64 @@ public class PDFResumeUpdater {
         }
     }
 
+    /**
+     * Loading policy for the input and for parallel analysis workers
+     */
+    public void setLoader(DocumentLoader loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * Number of workers used to analyse pages concurrently (1 = sequential)
+     */
+    public void setAnalysisParallelism(int parallelism) {
+        this.analysisParallelism = Math.max(1, parallelism);
+    }
+
     public void loadPDF(String inputPath) throws IOException {
-        document = PDDocument.load(new File(inputPath));
+        document = loader.load(new File(inputPath));
+        sourcePath = inputPath;
         sections = new HashMap<>();
+        fonts = new FontResolver(document);
+        session = new EditSession(document, saver);
+        pages = new ArrayList<>();
+        document.getPages().forEach(pages::add);
         analyzePDFStructure();
     }
 
     private void analyzePDFStructure() throws IOException {
-        CustomTextStripper stripper = new CustomTextStripper();
-        stripper.setSortByPosition(true);
-
-        for (int i = 0; i < document.getNumberOfPages(); i++) {
-            stripper.setStartPage(i + 1);
-            stripper.setEndPage(i + 1);
-            stripper.getText(document);
+        if (analysisParallelism > 1 && document.getNumberOfPages() > 1) {
+            analyzePagesInParallel();
+            return;
         }
 
-        sections = stripper.getSections();
-        defaultFont = stripper.getDefaultFont();
+        StructureConsumer structure = new StructureConsumer();
+        new DocumentAnalyzer()
+                .addConsumer(structure)
+                .analyze(document);
+
+        sections = structure.getSections();
+        defaultFont = structure.getDefaultFont();
+    }
+
+    private void analyzePagesInParallel() throws IOException {
+        PageScheduler scheduler = new PageScheduler(analysisParallelism);
+        StructureConsumer structure = scheduler.run(
+                () -> loader.load(new File(sourcePath)),
+                document.getNumberOfPages(),
+                (doc, start, end) -> {
+                    StructureConsumer part = new StructureConsumer();
+                    new DocumentAnalyzer()
+                            .addConsumer(part)
+                            .setPageRange(start, end)
+                            .analyze(doc);
+                    part.detachFont(doc);
+                    return part;
+                },
+                StructureConsumer::merge);
+
+        sections = structure.getSections();
+        defaultFont = structure.resolveFont(document);
     }
 
     public void addExperience(String title, String company, String duration, String[] bullets)
@@ -87,46 +141,45 @@ public class PDFResumeUpdater {
             return;
         }
 
-        PDPage page = document.getPage(expSection.pageIndex);
-        PDPageContentStream contentStream = new PDPageContentStream(
-                document, page, PDPageContentStream.AppendMode.APPEND, true, true);
-
-        // Calculate insertion point
-        float yPos = expSection.yPosition - 20; // Start below section header
+        // The captured fonts are often subsets without the glyphs we need
+        StringBuilder body = new StringBuilder(company).append(" | ").append(duration);
+        for (String bullet : bullets) {
+            body.append("• ").append(bullet);
+        }
+        PDFont boldFont = fonts.resolve(defaultFont.bold, title);
+        PDFont regularFont = fonts.resolve(defaultFont.regular, body.toString());
+
+        PDPage page = pages.get(expSection.pageIndex);
+        TextBlockWriter writer = session.writer(page);
+
+        // Calculate insertion point, below entries inserted before. Section
+        // positions are measured from the top of the page; drawing is in user space
+        float inserted = insertedHeight.getOrDefault(expSection.sectionName, 0f);
+        float headerY = page.getCropBox().getUpperRightY() - expSection.yPosition;
+        float startY = headerY - 20 - inserted; // Start below section header
+        float yPos = startY;
         float xPos = expSection.xPosition;
         float lineHeight = defaultFont.size * 1.2f;
 
         // Add job title
-        contentStream.beginText();
-        contentStream.setFont(defaultFont.bold, defaultFont.size);
-        contentStream.newLineAtOffset(xPos, yPos);
-        contentStream.showText(title);
-        contentStream.endText();
+        writer.setFont(boldFont, defaultFont.size);
+        writer.showLine(xPos, yPos, title);
         yPos -= lineHeight;
 
         // Add company and duration
-        contentStream.beginText();
-        contentStream.setFont(defaultFont.regular, defaultFont.size - 1);
-        contentStream.newLineAtOffset(xPos, yPos);
-        contentStream.showText(company + " | " + duration);
-        contentStream.endText();
+        writer.setFont(regularFont, defaultFont.size - 1);
+        writer.showLine(xPos, yPos, company + " | " + duration);
         yPos -= lineHeight;
 
         // Add bullet points
         for (String bullet : bullets) {
-            contentStream.beginText();
-            contentStream.setFont(defaultFont.regular, defaultFont.size - 1);
-            contentStream.newLineAtOffset(xPos + 10, yPos);
-            contentStream.showText("• " + bullet);
-            contentStream.endText();
+            writer.showLine(xPos + 10, yPos, "• " + bullet);
             yPos -= lineHeight;
         }
 
-        contentStream.close();
-
-        // Shift content below
-        shiftContentBelow(expSection.pageIndex, yPos,
-                Math.abs(yPos - expSection.yPosition) + 10);
+        // Shift what was below the first line, in the section's column, down by the height of the entry
+        shiftContentBelow(expSection.pageIndex, startY + defaultFont.size, xPos, startY - yPos);
+        insertedHeight.put(expSection.sectionName, inserted + startY - yPos);
     }
 
     public void modifySkill(String oldSkill, String newSkill) throws IOException {
@@ -140,79 +193,120 @@ public class PDFResumeUpdater {
             return;
         }
 
-        // Find and replace skill text
-        PDPage page = document.getPage(skillSection.pageIndex);
-        ContentReplacer replacer = new ContentReplacer(document, page);
-        replacer.replaceText(oldSkill, newSkill, skillSection.yPosition);
+        // Find and replace skill text, in the page as shifted so far
+        PDPage page = pages.get(skillSection.pageIndex);
+        flushShifts(page);
+        ContentReplacer replacer = new ContentReplacer(page, fonts, saver);
+        ContentReplacer.Result result = replacer.replaceText(oldSkill, newSkill, skillSection.yPosition);
+        if (result == ContentReplacer.Result.TOO_WIDE) {
+            System.out.println("Warning: " + newSkill + " doesn't fit in the skills column");
+        } else if (result == ContentReplacer.Result.NOT_FOUND) {
+            System.out.println("Warning: Skill not found: " + oldSkill);
+        }
     }
 
     public void addCertification(String certification) throws IOException {
         SectionInfo certSection = sections.get("CERTIFICATIONS");
-        if (certSection == null) {
-            certSection = sections.get("CERTIFICATES");
-        }
-
         if (certSection == null) {
             // Create new section
             createCertificationSection(certification);
             return;
         }
 
-        PDPage page = document.getPage(certSection.pageIndex);
-        PDPageContentStream contentStream = new PDPageContentStream(
-                document, page, PDPageContentStream.AppendMode.APPEND, true, true);
+        PDFont regularFont = fonts.resolve(defaultFont.regular, "• " + certification);
+        PDPage page = pages.get(certSection.pageIndex);
+        TextBlockWriter writer = session.writer(page);
 
-        float yPos = certSection.yPosition - 30;
+        // Section positions are measured from the top of the page; drawing is in user space
+        float headerY = page.getCropBox().getUpperRightY() - certSection.yPosition;
+        float yPos = headerY - 30;
         float xPos = certSection.xPosition;
 
-        contentStream.beginText();
-        contentStream.setFont(defaultFont.regular, defaultFont.size - 1);
-        contentStream.newLineAtOffset(xPos + 10, yPos);
-        contentStream.showText("• " + certification);
-        contentStream.endText();
-
-        contentStream.close();
+        writer.setFont(regularFont, defaultFont.size - 1);
+        writer.showLine(xPos + 10, yPos, "• " + certification);
     }
 
     private void createCertificationSection(String certification) throws IOException {
+        PDFont boldFont = fonts.resolve(defaultFont.bold, "CERTIFICATIONS");
+        PDFont regularFont = fonts.resolve(defaultFont.regular, "• " + certification);
+
         // Add new section at bottom of first page
-        PDPage page = document.getPage(0);
-        PDPageContentStream contentStream = new PDPageContentStream(
-                document, page, PDPageContentStream.AppendMode.APPEND, true, true);
+        PDPage page = pages.get(0);
+        TextBlockWriter writer = session.writer(page);
 
         float yPos = 100; // Bottom margin
         float xPos = 50; // Left margin
 
         // Section header
-        contentStream.beginText();
-        contentStream.setFont(defaultFont.bold, defaultFont.size + 2);
-        contentStream.newLineAtOffset(xPos, yPos);
-        contentStream.showText("CERTIFICATIONS");
-        contentStream.endText();
+        writer.setFont(boldFont, defaultFont.size + 2);
+        writer.showLine(xPos, yPos, "CERTIFICATIONS");
 
         yPos -= defaultFont.size * 1.5f;
 
         // Certification entry
-        contentStream.beginText();
-        contentStream.setFont(defaultFont.regular, defaultFont.size - 1);
-        contentStream.newLineAtOffset(xPos + 10, yPos);
-        contentStream.showText("• " + certification);
-        contentStream.endText();
+        writer.setFont(regularFont, defaultFont.size - 1);
+        writer.showLine(xPos + 10, yPos, "• " + certification);
+    }
+
+    /**
+     * Move the page's existing content below fromY, in the column holding x,
+     * down by shiftAmount. The page is indexed on the first shift; the
+     * content is rewritten once, by {@link #flushShifts}, however many
+     * entries were inserted.
+     */
+    private void shiftContentBelow(int pageIndex, float fromY, float x, float shiftAmount)
+            throws IOException {
+        PDPage page = pages.get(pageIndex);
+        ContentShifter shifter = shifters.get(page);
+        if (shifter == null) {
+            shifter = new ContentShifter(document, page, saver);
+            shifters.put(page, shifter);
+        }
+        shifter.shiftColumn(fromY, x, shiftAmount);
+    }
 
-        contentStream.close();
+    private void flushShifts(PDPage page) throws IOException {
+        ContentShifter shifter = shifters.remove(page);
+        if (shifter != null && shifter.flush() != null) {
+            System.out.println("  Content overflowed onto a new page after page "
+                    + (pages.indexOf(page) + 1));
+        }
     }
 
-    private void shiftContentBelow(int pageIndex, float fromY, float shiftAmount) {
-        // This would use PDFBox's content stream manipulation
-        // to shift existing content down to make room for new content
-        // Complex implementation - placeholder for concept
+    /**
+     * Full rewrite (default) or incremental update on save
+     */
+    public void setSaveMode(DocumentSaver.Mode mode) {
+        saver.setMode(mode);
     }
 
     public void savePDF(String outputPath) throws IOException {
-        document.save(outputPath);
+        for (PDPage page : new ArrayList<>(shifters.keySet())) {
+            flushShifts(page);
+        }
+        session.commit();
+        saver.save(document, outputPath);
         document.close();
     }
 
+    /**
+     * Fonts that couldn't draw the new text, and their replacements
+     */
+    public Map<String, String> getFontFallbacks() {
+        return fonts != null ? fonts.getFallbacks() : Collections.emptyMap();
+    }
+
+    /**
+     * Section headers found by analysis, by section name
+     */
+    Map<String, SectionInfo> getSections() {
+        return sections;
+    }
+
+    FontInfo getDefaultFont() {
+        return defaultFont;
+    }
+
     // Helper classes
 
     static class SectionInfo {
@@ -242,89 +336,152 @@ public class PDFResumeUpdater {
         }
     }
 
-    class CustomTextStripper extends PDFTextStripper {
+    static class StructureConsumer implements AnalysisConsumer {
+        private final SectionVocabulary vocabulary = SectionVocabulary.getDefault();
         private Map<String, SectionInfo> detectedSections = new HashMap<>();
-        private FontInfo fontInfo;
-        private int currentPage = 0;
+        // First font seen, first bold-looking font, first section header font
+        private FontRef regular;
+        private FontRef bold;
+        private FontRef heading;
 
-        public CustomTextStripper() throws IOException {
-            super();
+        @Override
+        public boolean needsReadingOrder() {
+            return true; // "First" fonts are first in reading order
         }
 
         @Override
-        protected void writeString(String text, List<TextPosition> positions)
-                throws IOException {
-
-            if (positions.isEmpty())
-                return;
-
-            TextPosition first = positions.get(0);
-            String upperText = text.trim().toUpperCase();
-
-            // Detect section headers
-            if (isSectionHeader(upperText, first)) {
-                detectedSections.put(upperText, new SectionInfo(
-                        currentPage,
-                        first.getXDirAdj(),
-                        first.getYDirAdj(),
-                        upperText));
+        public void textRun(TextRun run) {
+            // Detect section headers, stored under their section's name so
+            // a translated header is found by the lookups above
+            int match = run.getFontSizeInPt() > 11
+                    ? vocabulary.firstContained(run.getText()) : -1;
+            boolean header = match >= 0;
+            if (header) {
+                String section = vocabulary.section(match);
+                detectedSections.put(section, new SectionInfo(
+                        run.getPageIndex(),
+                        run.getX(),
+                        run.getY(),
+                        section));
             }
 
             // Capture font info
-            if (fontInfo == null && first.getFont() != null) {
-                fontInfo = new FontInfo(
-                        first.getFont(),
-                        first.getFont(), // Assume same for now
-                        first.getFontSizeInPt());
+            PDFont font = run.getFont();
+            if (font == null) return;
+            if (regular == null) {
+                regular = new FontRef(font, run.getFontSizeInPt(), run.getPageIndex());
             }
-
-            super.writeString(text, positions);
-        }
-
-        private boolean isSectionHeader(String text, TextPosition pos) {
-            String[] headers = { "EXPERIENCE", "EDUCATION", "SKILLS",
-                    "CERTIFICATIONS", "PROJECTS", "WORK EXPERIENCE",
-                    "TECHNICAL SKILLS" };
-
-            for (String header : headers) {
-                if (text.contains(header) && pos.getFontSizeInPt() > 11) {
-                    return true;
-                }
+            if (bold == null && FontResolver.isBold(font)) {
+                bold = new FontRef(font, run.getFontSizeInPt(), run.getPageIndex());
+            }
+            if (heading == null && header) {
+                heading = new FontRef(font, run.getFontSizeInPt(), run.getPageIndex());
             }
-            return false;
         }
 
         @Override
-        protected void startPage(PDPage page) throws IOException {
-            currentPage = getCurrentPageNo() - 1;
-            super.startPage(page);
+        public void contribute(DocumentModel.Builder model) {
+            // Results are read directly through the getters below
         }
 
         public Map<String, SectionInfo> getSections() {
             return detectedSections;
         }
 
+        /**
+         * First font as regular; a bold-looking font, else the section
+         * header font, else the regular one as bold
+         */
         public FontInfo getDefaultFont() {
-            return fontInfo != null ? fontInfo
-                    : new FontInfo(PDType1Font.HELVETICA,
-                            PDType1Font.HELVETICA_BOLD, 11);
+            if (regular == null) {
+                return new FontInfo(PDType1Font.HELVETICA,
+                        PDType1Font.HELVETICA_BOLD, 11);
+            }
+            FontRef boldRef = bold != null ? bold : heading != null ? heading : regular;
+            return new FontInfo(regular.font, boldRef.font, regular.size);
+        }
+
+        /**
+         * Remember the captured fonts by object key and name so they can be
+         * found again in another copy of the same document
+         */
+        void detachFont(PDDocument doc) {
+            for (FontRef ref : Arrays.asList(regular, bold, heading)) {
+                if (ref != null) ref.detach(doc);
+            }
+        }
+
+        /**
+         * Fold in the results for the pages that follow this consumer's range
+         */
+        StructureConsumer merge(StructureConsumer next) {
+            detectedSections.putAll(next.detectedSections);
+            if (regular == null) regular = next.regular;
+            if (bold == null) bold = next.bold;
+            if (heading == null) heading = next.heading;
+            return this;
+        }
+
+        /**
+         * Default font with any detached font looked up again in doc
+         */
+        FontInfo resolveFont(PDDocument doc) throws IOException {
+            if (regular == null || regular.name == null) {
+                return getDefaultFont();
+            }
+
+            PDFont regularFont = regular.find(doc);
+            if (regularFont == null) {
+                return new FontInfo(PDType1Font.HELVETICA,
+                        PDType1Font.HELVETICA_BOLD, regular.size);
+            }
+            FontRef boldRef = bold != null ? bold : heading != null ? heading : regular;
+            PDFont boldFont = boldRef.find(doc);
+            return new FontInfo(regularFont, boldFont != null ? boldFont : regularFont,
+                    regular.size);
         }
     }
 
-    class ContentReplacer {
-        private PDDocument doc;
-        private PDPage page;
+    // A captured font, detachable from the document it was read from
+    static class FontRef {
+        PDFont font;
+        final float size;
+        final int page;
+        // Set once the font's document has been closed (parallel workers)
+        COSObjectKey key;
+        String name;
+
+        FontRef(PDFont font, float size, int page) {
+            this.font = font;
+            this.size = size;
+            this.page = page;
+        }
 
-        public ContentReplacer(PDDocument d, PDPage p) {
-            doc = d;
-            page = p;
+        void detach(PDDocument doc) {
+            key = doc.getDocument().getKey(font.getCOSObject());
+            name = font.getName();
+            font = null;
         }
 
-        public void replaceText(String oldText, String newText, float nearY)
-                throws IOException {
-            // Use PDFBox's content stream editing to replace text
-            // This is a simplified placeholder
-            System.out.println("Replacing: " + oldText + " -> " + newText);
+        PDFont find(PDDocument doc) throws IOException {
+            if (font != null) return font;
+            if (key != null) {
+                COSObject object = doc.getDocument().getObjectFromPool(key);
+                if (object.getObject() instanceof COSDictionary) {
+                    return PDFontFactory.createFont((COSDictionary) object.getObject());
+                }
+            }
+            // Direct font objects have no key; match by name on the page
+            PDResources resources = doc.getPage(page).getResources();
+            if (resources != null) {
+                for (COSName resourceName : resources.getFontNames()) {
+                    PDFont candidate = resources.getFont(resourceName);
+                    if (candidate != null && name.equals(candidate.getName())) {
+                        return candidate;
+                    }
+                }
+            }
+            return null;
         }
     }
 }
\ No newline at end of file
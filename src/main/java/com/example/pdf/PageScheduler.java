@@ -0,0 +1,110 @@
+package com.example.pdf;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+
+/**
+ * Fork-join page scheduler.
+ *
+ * Splits a document's pages into contiguous ranges and analyses each range
+ * on its own worker. PDFBox documents can't be parsed from several threads,
+ * so every worker opens a private copy of the document. Partial results are
+ * merged strictly in page order, so the outcome matches a sequential pass.
+ */
+public class PageScheduler {
+
+    /**
+     * Opens a private copy of the document for one worker
+     */
+    public interface DocumentSource {
+        PDDocument open() throws IOException;
+    }
+
+    /**
+     * Analyses pages start..end (1-based, inclusive) of a worker's document
+     */
+    public interface RangeAnalysis<R> {
+        R analyze(PDDocument doc, int startPage, int endPage) throws IOException;
+    }
+
+    private final int parallelism;
+
+    public PageScheduler(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public int getParallelism() { return parallelism; }
+
+    /**
+     * Run the analysis over every page and merge the results left to right
+     */
+    public <R> R run(DocumentSource source, int pageCount,
+                     RangeAnalysis<R> analysis, BinaryOperator<R> merge) throws IOException {
+        int pagesPerTask = (pageCount + parallelism - 1) / parallelism;
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.invoke(new RangeTask<>(source, analysis, merge,
+                                               1, pageCount, pagesPerTask));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // ForkJoinTask is Serializable, but these tasks only ever run in the
+    // pool above and are never serialized
+    @SuppressWarnings("serial")
+    static class RangeTask<R> extends RecursiveTask<R> {
+        private final DocumentSource source;
+        private final RangeAnalysis<R> analysis;
+        private final BinaryOperator<R> merge;
+        private final int startPage;
+        private final int endPage;
+        private final int pagesPerTask;
+
+        RangeTask(DocumentSource src, RangeAnalysis<R> analysis, BinaryOperator<R> merge,
+                  int start, int end, int pagesPerTask) {
+            this.source = src;
+            this.analysis = analysis;
+            this.merge = merge;
+            this.startPage = start;
+            this.endPage = end;
+            this.pagesPerTask = pagesPerTask;
+        }
+
+        @Override
+        protected R compute() {
+            int pages = endPage - startPage + 1;
+            if (pages <= pagesPerTask) {
+                return analyzeRange();
+            }
+
+            // Split on a chunk boundary so every leaf gets whole chunks
+            int chunks = (pages + pagesPerTask - 1) / pagesPerTask;
+            int mid = startPage + (chunks / 2) * pagesPerTask - 1;
+
+            RangeTask<R> left = new RangeTask<>(source, analysis, merge,
+                                                startPage, mid, pagesPerTask);
+            RangeTask<R> right = new RangeTask<>(source, analysis, merge,
+                                                 mid + 1, endPage, pagesPerTask);
+            left.fork();
+            R rightResult = right.compute();
+            R leftResult = left.join();
+            return merge.apply(leftResult, rightResult);
+        }
+
+        private R analyzeRange() {
+            try (PDDocument doc = source.open()) {
+                return analysis.analyze(doc, startPage, endPage);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,440 @@
+package com.example.pdf;
+
+import org.apache.pdfbox.pdmodel.*;
+import org.apache.pdfbox.pdmodel.font.*;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Core Resume Editor Class
+ */
+class ResumeEditor {
+    
+    // Shared across editors so repeat templates skip analysis; off unless configured
+    static final LayoutCache<CachedLayout> LAYOUT_CACHE =
+        LayoutCache.fromSystemProperties(CachedLayout.class, "resume-editor");
+    
+    // Inserted blocks laid out once per template and reused as forms; off unless configured
+    static final StampCache STAMP_CACHE = StampCache.fromSystemProperties();
+    
+    private PDDocument document;
+    private LayoutAnalyzer layoutAnalyzer;
+    private FontManager fontManager;
+    private SectionMapper sectionMapper;
+    private DocumentModel model;
+    private final DocumentSaver saver = new DocumentSaver();
+    private final EditSession session;
+    private boolean lazyAnalysis = Boolean.getBoolean("resume.analysis.lazy");
+    private String template;
+    private final Map<StampCache.Stamp, PDFormXObject> forms = new IdentityHashMap<>();
+    
+    public ResumeEditor(String pdfPath) throws IOException {
+        this(new DocumentLoader().load(new File(pdfPath)));
+    }
+    
+    public ResumeEditor(PDDocument document) {
+        this.document = document;
+        this.layoutAnalyzer = new LayoutAnalyzer();
+        this.fontManager = new FontManager();
+        this.sectionMapper = new SectionMapper();
+        this.session = new EditSession(document, saver);
+    }
+    
+    /**
+     * Analyse only the first page up front and find each section's page
+     * when an edit first asks for it. Columns and fonts then come from the
+     * first page alone, and the layout cache is neither read nor filled.
+     */
+    public void setLazyAnalysis(boolean lazy) {
+        this.lazyAnalysis = lazy;
+    }
+    
+    public void analyze() throws IOException {
+        System.out.println("Extracting layout information...");
+        LazyDocumentModel pages = null;
+        if (lazyAnalysis) {
+            pages = new LazyDocumentModel(document, () -> new DocumentAnalyzer()
+                .addConsumer(new ColumnConsumer())
+                .addConsumer(new SectionConsumer())
+                .addConsumer(new FontConsumer()));
+            LazyDocumentModel firstPage = pages;
+            model = ResumeMetrics.time(ResumeMetrics.ANALYSIS, "step", "extract", () -> firstPage.page(0));
+        } else {
+            model = ResumeMetrics.time(ResumeMetrics.ANALYSIS, "step", "extract", this::analyzeCached);
+        }
+        ResumeMetrics.time(ResumeMetrics.ANALYSIS, "step", "layout", () -> layoutAnalyzer.apply(model));
+        
+        System.out.println("Detecting fonts and styles...");
+        ResumeMetrics.time(ResumeMetrics.ANALYSIS, "step", "fonts",
+                           () -> fontManager.extractFonts(document, model));
+        
+        System.out.println("Mapping resume sections...");
+        if (pages != null) {
+            sectionMapper.mapSections(pages);
+        } else {
+            ResumeMetrics.time(ResumeMetrics.ANALYSIS, "step", "sections",
+                               () -> sectionMapper.mapSections(model));
+        }
+        
+        long glyphs = 0;
+        for (DocumentModel.FontUsage usage : model.getFontUsages()) {
+            glyphs += usage.getGlyphCount();
+        }
+        ResumeMetrics.recordGlyphs(glyphs);
+        
+        System.out.println("\nLayout Analysis Results:");
+        System.out.println("- Layout Type: " + layoutAnalyzer.getLayoutType());
+        System.out.println("- Columns: " + layoutAnalyzer.getColumnCount());
+        if (pages != null) {
+            System.out.println("- Sections: found on demand (" + pages.getPageCount() + " pages)");
+        } else {
+            System.out.println("- Sections Found: " + sectionMapper.getSectionCount());
+        }
+    }
+    
+    private DocumentModel analyzeCached() throws IOException {
+        if (LAYOUT_CACHE == null) {
+            return analyzeText();
+        }
+        
+        String fingerprint = LayoutFingerprint.of(document);
+        CachedLayout cached = LAYOUT_CACHE.get(fingerprint);
+        if (cached != null && !LAYOUT_CACHE.shouldVerify()) {
+            return cached.toModel(document);
+        }
+        
+        DocumentModel fresh = analyzeText();
+        if (cached == null) {
+            LAYOUT_CACHE.put(fingerprint, new CachedLayout(fresh));
+        } else {
+            LAYOUT_CACHE.verify(fingerprint, cached, new CachedLayout(fresh));
+        }
+        return fresh;
+    }
+    
+    private DocumentModel analyzeText() throws IOException {
+        // One extraction pass feeds layout, font and section detection
+        return new DocumentAnalyzer()
+            .addConsumer(new ColumnConsumer())
+            .addConsumer(new SectionConsumer())
+            .addConsumer(new FontConsumer())
+            .analyze(document);
+    }
+    
+    /**
+     * Layout, sections and font usage of an analysed document, as stored in
+     * the layout cache. Fonts are stored by name and looked up again in the
+     * document they are restored into.
+     */
+    static class CachedLayout {
+        String layoutType;
+        int columnCount;
+        List<LayoutAnalyzer.ColumnInfo> columns;
+        float contentWidth;
+        Map<String, SectionInfo> sections;
+        List<String> fontNames = new ArrayList<>();
+        List<Float> fontSizes = new ArrayList<>();
+        List<Integer> glyphCounts = new ArrayList<>();
+        
+        CachedLayout(DocumentModel model) {
+            this.layoutType = model.getLayoutType();
+            this.columnCount = model.getColumnCount();
+            this.columns = new ArrayList<>(model.getColumns());
+            this.contentWidth = model.getContentWidth();
+            this.sections = new HashMap<>(model.getSections());
+            for (DocumentModel.FontUsage usage : model.getFontUsages()) {
+                fontNames.add(usage.getFont().getName());
+                fontSizes.add(usage.getFontSize());
+                glyphCounts.add(usage.getGlyphCount());
+            }
+        }
+        
+        DocumentModel toModel(PDDocument doc) throws IOException {
+            Map<String, PDFont> fonts = new HashMap<>();
+            List<DocumentModel.FontUsage> usages = new ArrayList<>();
+            for (int i = 0; i < fontNames.size(); i++) {
+                String name = fontNames.get(i);
+                if (!fonts.containsKey(name)) {
+                    fonts.put(name, FontResolver.findByName(doc, name));
+                }
+                // Fonts only used inside form XObjects aren't in page resources
+                if (fonts.get(name) != null) {
+                    usages.add(new DocumentModel.FontUsage(
+                        fonts.get(name), fontSizes.get(i), glyphCounts.get(i)));
+                }
+            }
+            return new DocumentModel.Builder(doc)
+                .setLayout(layoutType, columnCount, columns, contentWidth)
+                .setSections(sections)
+                .setFontUsages(usages)
+                .build();
+        }
+    }
+    
+    public void addExperienceEntry(String title, String company, String duration, 
+                                   String[] responsibilities) throws IOException {
+        ResumeMetrics.time(ResumeMetrics.EDIT, "type", "experience",
+                           () -> insertExperienceEntry(title, company, duration, responsibilities));
+    }
+    
+    private void insertExperienceEntry(String title, String company, String duration, 
+                                       String[] responsibilities) throws IOException {
+        
+        SectionInfo expSection = sectionMapper.getSection("EXPERIENCE", "WORK EXPERIENCE");
+        
+        if (expSection == null) {
+            System.out.println("Warning: Experience section not found, using default position");
+            expSection = new SectionInfo("EXPERIENCE", 0, 50, 650);
+        }
+        
+        // Get fonts; one font per role for the whole entry so lines match
+        StringBuilder body = new StringBuilder(company).append(" | ").append(duration);
+        for (String responsibility : responsibilities) {
+            body.append("• ").append(responsibility);
+        }
+        PDFont boldFont = fontManager.getBoldFont(title);
+        PDFont regularFont = fontManager.getRegularFont(body.toString());
+        
+        TextBlockWriter writer = session.writer(document.getPage(expSection.pageIndex));
+        
+        float baseFontSize = fontManager.getBaseFontSize();
+        float lineHeight = baseFontSize * 1.4f;
+        
+        // Calculate starting position
+        float xPos = expSection.xPosition;
+        float yPos = expSection.yPosition - 30; // Below section header
+        
+        // Adjust for two-column layouts
+        if (layoutAnalyzer.getLayoutType().contains("TWO_COLUMN")) {
+            LayoutAnalyzer.ColumnInfo mainColumn = layoutAnalyzer.getMainColumn();
+            if (mainColumn != null) {
+                xPos = mainColumn.startX + 5;
+            }
+        }
+        
+        float bulletIndent = 15f;
+        float wrapWidth = layoutAnalyzer.getContentWidth() - bulletIndent - 10;
+        
+        List<String> key = new ArrayList<>(Arrays.asList(
+            "experience", String.valueOf(baseFontSize), String.valueOf(wrapWidth),
+            title, company, duration));
+        key.addAll(Arrays.asList(responsibilities));
+        
+        drawBlock(writer, xPos, yPos, new PDFont[] { boldFont, regularFont }, key, (w, x, y) -> {
+            // Add job title (bold, slightly larger)
+            w.setFont(boldFont, baseFontSize + 1);
+            w.showLine(x, y, title);
+            y -= lineHeight;
+            
+            // Add company and duration (italic/regular)
+            w.setFont(regularFont, baseFontSize - 0.5f);
+            w.showLine(x, y, company + " | " + duration);
+            y -= lineHeight;
+            
+            // Add bullet points
+            for (String responsibility : responsibilities) {
+                // Word wrap if necessary
+                List<String> lines = wrapText(responsibility, regularFont, 
+                                             baseFontSize - 0.5f, wrapWidth);
+                
+                for (int i = 0; i < lines.size(); i++) {
+                    w.showLine(x + bulletIndent, y,
+                               (i == 0 ? "• " : "  ") + lines.get(i));
+                    y -= lineHeight * 0.9f; // Slightly tighter for wrapped lines
+                }
+            }
+        });
+    }
+    
+    /**
+     * Apply every edit in the config, in the order the CLI uses
+     */
+    public void applyConfig(ResumeModificationConfig config) throws IOException {
+        for (ResumeModificationConfig.ExperienceEntry entry : config.getNewExperiences()) {
+            addExperienceEntry(entry.getJobTitle(), entry.getCompany(), entry.getDuration(),
+                               entry.getResponsibilities().toArray(new String[0]));
+        }
+        for (Map.Entry<String, String> skill : config.getSkillModifications().entrySet()) {
+            modifySkill(skill.getKey(), skill.getValue());
+        }
+        for (String certification : config.getNewCertifications()) {
+            addCertification(certification);
+        }
+    }
+    
+    public void modifySkill(String oldSkill, String newSkill) throws IOException {
+        ResumeMetrics.time(ResumeMetrics.EDIT, "type", "skill", () -> replaceSkill(oldSkill, newSkill));
+    }
+    
+    private void replaceSkill(String oldSkill, String newSkill) throws IOException {
+        SectionInfo skillSection = sectionMapper.getSection("SKILLS", "TECHNICAL SKILLS");
+        
+        if (skillSection == null) {
+            System.out.println("Warning: Skills section not found");
+            return;
+        }
+        
+        ContentReplacer replacer = new ContentReplacer(
+            document.getPage(skillSection.pageIndex), fontManager.getResolver(), saver);
+        switch (replacer.replaceText(oldSkill, newSkill, skillSection.yPosition)) {
+            case REPLACED:
+                System.out.println("  Modified: " + oldSkill + " → " + newSkill);
+                break;
+            case TOO_WIDE:
+                System.out.println("Warning: " + newSkill + " doesn't fit in the skills column");
+                break;
+            default:
+                System.out.println("Warning: Skill not found: " + oldSkill);
+        }
+    }
+    
+    public void addCertification(String certification) throws IOException {
+        ResumeMetrics.time(ResumeMetrics.EDIT, "type", "certification",
+                           () -> insertCertification(certification));
+    }
+    
+    private void insertCertification(String certification) throws IOException {
+        SectionInfo certSection = sectionMapper.getSection("CERTIFICATIONS", "CERTIFICATES");
+        
+        if (certSection == null) {
+            // Create new section
+            System.out.println("  Creating new Certifications section");
+            createCertificationSection(certification);
+            return;
+        }
+        
+        PDFont regularFont = fontManager.getRegularFont("• " + certification);
+        TextBlockWriter writer = session.writer(document.getPage(certSection.pageIndex));
+        
+        float fontSize = fontManager.getBaseFontSize() - 0.5f;
+        
+        float xPos = certSection.xPosition + 15;
+        float yPos = certSection.yPosition - 25;
+        
+        drawBlock(writer, xPos, yPos, new PDFont[] { regularFont },
+                  Arrays.asList("certification", String.valueOf(fontSize), certification),
+                  (w, x, y) -> {
+                      w.setFont(regularFont, fontSize);
+                      w.showLine(x, y, "• " + certification);
+                  });
+    }
+    
+    private void createCertificationSection(String certification) throws IOException {
+        PDFont boldFont = fontManager.getBoldFont("CERTIFICATIONS");
+        PDFont regularFont = fontManager.getRegularFont("• " + certification);
+        
+        TextBlockWriter writer = session.writer(document.getPage(document.getNumberOfPages() - 1));
+        
+        float baseFontSize = fontManager.getBaseFontSize();
+        
+        float xPos = 50;
+        float yPos = 150; // Near bottom
+        
+        // Section header
+        writer.setFont(boldFont, baseFontSize + 2);
+        writer.showLine(xPos, yPos, "CERTIFICATIONS");
+        
+        yPos -= baseFontSize * 1.5f;
+        
+        // Certification entry
+        writer.setFont(regularFont, baseFontSize - 0.5f);
+        writer.showLine(xPos + 15, yPos, "• " + certification);
+    }
+    
+    /**
+     * Draw a block at (x, y), through the stamp cache when it is on and
+     * every font can be stamped
+     *
+     * @param key what the block's layout depends on besides the template and fonts
+     */
+    private void drawBlock(TextBlockWriter writer, float x, float y, PDFont[] fonts,
+                           List<String> key, StampCache.Block block) throws IOException {
+        if (STAMP_CACHE == null || !StampCache.canStamp(fonts)) {
+            block.draw(writer, x, y);
+            return;
+        }
+        
+        if (template == null) {
+            template = LayoutFingerprint.of(document);
+        }
+        StringBuilder fullKey = new StringBuilder(template);
+        for (PDFont font : fonts) {
+            fullKey.append('\u0000').append(StampCache.fontKey(font));
+        }
+        for (String part : key) {
+            fullKey.append('\u0000').append(part);
+        }
+        
+        StampCache.Stamp stamp = STAMP_CACHE.get(fullKey.toString(), document, block);
+        PDFormXObject form = forms.get(stamp);
+        if (form == null) {
+            form = stamp.toForm(document, fonts);
+            forms.put(stamp, form);
+        }
+        writer.drawForm(form, x, y);
+    }
+    
+    List<String> wrapText(String text, PDFont font, float fontSize, 
+                                  float maxWidth) throws IOException {
+        return ResumeMetrics.time(ResumeMetrics.EDIT, "type", "wrap",
+                                  () -> TextWrapper.wrap(text, font, fontSize, maxWidth).toLines());
+    }
+    
+    /**
+     * Full rewrite (default) or incremental update on save
+     */
+    public void setSaveMode(DocumentSaver.Mode mode) {
+        saver.setMode(mode);
+    }
+    
+    /**
+     * Deflater level for the streams written on save (default DEFAULT)
+     */
+    public void setCompression(StreamCompressor.Level level) {
+        saver.setCompressor(new StreamCompressor(level));
+    }
+    
+    /**
+     * Downsample oversized images on save (null: leave images alone)
+     */
+    public void setImageDownsampler(ImageDownsampler images) {
+        saver.setImageDownsampler(images);
+    }
+    
+    /**
+     * What image downsampling did on the last save, or null if it didn't run
+     */
+    public ImageDownsampler.Result getImageResult() {
+        return saver.getLastImageResult();
+    }
+    
+    /**
+     * Fonts that couldn't draw the new text, and their replacements
+     */
+    public Map<String, String> getFontFallbacks() {
+        FontResolver resolver = fontManager.getResolver();
+        return resolver != null ? resolver.getFallbacks() : Collections.emptyMap();
+    }
+    
+    public void save(String outputPath) throws IOException {
+        ResumeMetrics.time(ResumeMetrics.SAVE, "phase", "commit", session::commit);
+        saver.save(document, outputPath);
+        document.close();
+    }
+    
+    public void save(OutputStream output) throws IOException {
+        ResumeMetrics.time(ResumeMetrics.SAVE, "phase", "commit", session::commit);
+        saver.save(document, output);
+        document.close();
+    }
+    
+    /**
+     * Release the document without saving (e.g. after a failed edit)
+     */
+    public void close() throws IOException {
+        session.discard();
+        document.close();
+    }
+}
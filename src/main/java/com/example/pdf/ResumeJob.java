@@ -0,0 +1,53 @@
+package com.example.pdf;
+
+/**
+ * One asynchronous resume update, as persisted by {@link ResumeJobStore}
+ * and reported by the job API. Times are epoch milliseconds.
+ */
+public class ResumeJob {
+
+    public enum State {
+        QUEUED,
+        RUNNING,
+        DONE,
+        FAILED
+    }
+
+    public enum Priority {
+        INTERACTIVE,
+        BATCH
+    }
+
+    String id;
+    String tenant;
+    Priority priority;
+    State state;
+    String fileName;
+    long submittedAt;
+    long startedAt;
+    long finishedAt;
+    String error;
+
+    ResumeJob(String id, String tenant, Priority priority, String fileName) {
+        this.id = id;
+        this.tenant = tenant;
+        this.priority = priority;
+        this.fileName = fileName;
+        this.state = State.QUEUED;
+        this.submittedAt = System.currentTimeMillis();
+    }
+
+    public String getId() { return id; }
+    public String getTenant() { return tenant; }
+    public Priority getPriority() { return priority; }
+    public State getState() { return state; }
+    public String getFileName() { return fileName; }
+    public long getSubmittedAt() { return submittedAt; }
+    public long getStartedAt() { return startedAt; }
+    public long getFinishedAt() { return finishedAt; }
+    public String getError() { return error; }
+
+    public boolean isFinished() {
+        return state == State.DONE || state == State.FAILED;
+    }
+}
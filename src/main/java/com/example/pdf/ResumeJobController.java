@@ -0,0 +1,104 @@
+package com.example.pdf;
+
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.*;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.*;
+import java.net.URI;
+
+/**
+ * Asynchronous counterpart of {@link ResumeUpdateController}.
+ *
+ * POST /api/jobs spools the upload to disk, queues it with
+ * {@link ResumeJobScheduler} and answers 202 with the job at once. The
+ * tenant comes from the X-Tenant header and the lane from the "priority"
+ * parameter (interactive or batch). GET /api/jobs/{id} reports the job's
+ * state and GET /api/jobs/{id}/result downloads the edited PDF once it is
+ * DONE. DELETE removes a job that isn't running, along with its files.
+ */
+@RestController
+@RequestMapping("/api/jobs")
+public class ResumeJobController {
+
+    private final ResumeJobScheduler scheduler;
+    private final ResumeJobStore store;
+
+    public ResumeJobController(ResumeJobScheduler scheduler) {
+        this.scheduler = scheduler;
+        this.store = scheduler.getStore();
+    }
+
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<ResumeJob> submit(
+            @RequestPart("file") MultipartFile file,
+            @RequestPart(value = "config", required = false) String configJson,
+            @RequestHeader(value = "X-Tenant", defaultValue = "default") String tenant,
+            @RequestParam(value = "priority", defaultValue = "batch") String priority) throws IOException {
+
+        if (file.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Empty upload");
+        }
+        ResumeJob.Priority lane;
+        try {
+            lane = ResumeJob.Priority.valueOf(priority.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "priority must be interactive or batch");
+        }
+        ResumeModificationConfig config = ResumeUpdateController.parseConfig(configJson);
+
+        ResumeJob job = store.create(tenant, lane, file.getOriginalFilename(), config);
+        // Large parts are already on disk, and transferTo moves them rather than copying
+        file.transferTo(store.inputPath(job));
+        scheduler.submit(job);
+
+        // A worker may already be updating the queued instance; answer with the stored state
+        return ResponseEntity.accepted()
+            .location(URI.create("/api/jobs/" + job.getId()))
+            .body(find(job.getId()));
+    }
+
+    @GetMapping("/{id}")
+    public ResumeJob status(@PathVariable String id) {
+        return find(id);
+    }
+
+    @GetMapping(value = "/{id}/result", produces = MediaType.APPLICATION_PDF_VALUE)
+    public ResponseEntity<Resource> result(@PathVariable String id) {
+        ResumeJob job = find(id);
+        if (job.getState() != ResumeJob.State.DONE) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                "Job is " + job.getState() + (job.getError() != null ? ": " + job.getError() : ""));
+        }
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_PDF)
+            .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(ResumeUpdateController.outputName(job.getFileName()))
+                .build()
+                .toString())
+            .body(new FileSystemResource(store.resultPath(job)));
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> delete(@PathVariable String id) throws IOException {
+        ResumeJob job = find(id);
+        if (job.getState() == ResumeJob.State.RUNNING
+                || (job.getState() == ResumeJob.State.QUEUED && !scheduler.cancel(job))) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Job is running");
+        }
+        store.delete(job.getId());
+        return ResponseEntity.noContent().build();
+    }
+
+    private ResumeJob find(String id) {
+        ResumeJob job = store.find(id);
+        if (job == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No job " + id);
+        }
+        return job;
+    }
+}
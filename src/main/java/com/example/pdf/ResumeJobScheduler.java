@@ -0,0 +1,278 @@
+package com.example.pdf;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
+
+/**
+ * Runs queued resume jobs in the background.
+ *
+ * Jobs wait in two lanes, interactive and batch, and within a lane each
+ * tenant has its own queue served round-robin, so one tenant's bulk upload
+ * can't hold up everyone else. Interactive jobs go first, but every
+ * resume.jobs.batchEvery-th dispatch takes a batch job when one is
+ * waiting, so batch work never starves. At most resume.jobs.workers jobs
+ * (default: one per core) run at once, since each one is CPU-bound.
+ *
+ * Inputs and results live in a {@link ResumeJobStore} under
+ * resume.jobs.dir. Jobs still queued or running when the process stopped
+ * are queued again on startup.
+ */
+@Component
+public class ResumeJobScheduler {
+
+    private final ResumeJobStore store;
+    private final int workerCount;
+    private final int batchEvery;
+    private final DocumentLoader loader = new DocumentLoader();
+
+    private final Lock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final FairQueue interactive = new FairQueue();
+    private final FairQueue batch = new FairQueue();
+    private int dispatched;
+    private boolean stopped;
+
+    private ExecutorService workers;
+
+    public ResumeJobScheduler(
+            @Value("${resume.jobs.dir:${java.io.tmpdir}/resume-jobs}") Path dir,
+            @Value("${resume.jobs.workers:0}") int workers,
+            @Value("${resume.jobs.batchEvery:4}") int batchEvery) throws IOException {
+        this.store = new ResumeJobStore(dir);
+        this.workerCount = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        this.batchEvery = Math.max(1, batchEvery);
+    }
+
+    @PostConstruct
+    void start() throws IOException {
+        int recovered = 0;
+        for (ResumeJob job : store.list()) {
+            if (job.isFinished()) continue;
+            if (!Files.exists(store.inputPath(job))) {
+                // Submission died before the upload was spooled
+                fail(job, "Input was lost before the job started");
+                continue;
+            }
+            job.state = ResumeJob.State.QUEUED;
+            job.startedAt = 0;
+            store.save(job);
+            enqueue(job);
+            recovered++;
+        }
+        if (recovered > 0) {
+            System.out.println("Recovered " + recovered + " queued resume job(s)");
+        }
+
+        workers = Executors.newFixedThreadPool(workerCount);
+        for (int i = 0; i < workerCount; i++) {
+            workers.submit(this::work);
+        }
+    }
+
+    public ResumeJobStore getStore() {
+        return store;
+    }
+
+    /**
+     * Queue a job whose input has already been spooled to the store
+     */
+    public void submit(ResumeJob job) {
+        enqueue(job);
+    }
+
+    private void enqueue(ResumeJob job) {
+        lock.lock();
+        try {
+            (job.priority == ResumeJob.Priority.INTERACTIVE ? interactive : batch).add(job);
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove a job that hasn't started yet; false if it's already running
+     */
+    public boolean cancel(ResumeJob job) {
+        lock.lock();
+        try {
+            return interactive.remove(job.id) || batch.remove(job.id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueuedCount() {
+        lock.lock();
+        try {
+            return interactive.size() + batch.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ResumeJob take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (!stopped && interactive.isEmpty() && batch.isEmpty()) {
+                available.await();
+            }
+            if (stopped) return null;
+
+            dispatched++;
+            boolean batchTurn = dispatched % batchEvery == 0;
+            if (interactive.isEmpty() || (batchTurn && !batch.isEmpty())) {
+                return batch.poll();
+            }
+            return interactive.poll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void work() {
+        try {
+            ResumeJob job;
+            while ((job = take()) != null) {
+                run(job);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run(ResumeJob job) {
+        Path partial = null;
+        try {
+            job.state = ResumeJob.State.RUNNING;
+            job.startedAt = System.currentTimeMillis();
+            store.save(job);
+
+            ResumeModificationConfig config = store.loadConfig(job);
+            Path result = store.resultPath(job);
+            partial = result.resolveSibling(result.getFileName() + ".tmp");
+            try (PDDocument document = loader.load(store.inputPath(job).toFile())) {
+                ResumeEditor editor = new ResumeEditor(document);
+                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(partial))) {
+                    editor.analyze();
+                    editor.applyConfig(config);
+                    editor.save(out);
+                } finally {
+                    editor.close();
+                }
+            }
+            Files.move(partial, result, StandardCopyOption.REPLACE_EXISTING);
+            Files.deleteIfExists(store.inputPath(job));
+
+            job.state = ResumeJob.State.DONE;
+            job.finishedAt = System.currentTimeMillis();
+            store.save(job);
+        } catch (Throwable e) {
+            // Errors too: an OutOfMemoryError on one PDF must fail that job,
+            // not end this worker's loop with the job left RUNNING
+            System.out.println("Resume job " + job.id + " failed: " + e.getMessage());
+            deleteQuietly(partial);
+            fail(job, e.getMessage() != null ? e.getMessage() : e.toString());
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) return;
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            System.out.println("Warning: could not delete " + path + ": " + e.getMessage());
+        }
+    }
+
+    private void fail(ResumeJob job, String error) {
+        job.state = ResumeJob.State.FAILED;
+        job.error = error;
+        job.finishedAt = System.currentTimeMillis();
+        try {
+            store.save(job);
+        } catch (IOException e) {
+            System.out.println("Warning: could not record failure of job " + job.id
+                               + ": " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        lock.lock();
+        try {
+            stopped = true;
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (workers != null) {
+            // Jobs still running stay RUNNING in the store and rerun on restart
+            workers.shutdown();
+            workers.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Per-tenant FIFO queues served round-robin. Not thread-safe; the
+     * scheduler's lock guards it.
+     */
+    static class FairQueue {
+        private final Map<String, Deque<ResumeJob>> byTenant = new HashMap<>();
+        // Tenants with queued jobs, in the order they'll next be served
+        private final Deque<String> turns = new ArrayDeque<>();
+        private int size;
+
+        void add(ResumeJob job) {
+            Deque<ResumeJob> queue = byTenant.computeIfAbsent(job.tenant, t -> new ArrayDeque<>());
+            if (queue.isEmpty()) {
+                turns.addLast(job.tenant);
+            }
+            queue.addLast(job);
+            size++;
+        }
+
+        ResumeJob poll() {
+            String tenant = turns.pollFirst();
+            if (tenant == null) return null;
+
+            Deque<ResumeJob> queue = byTenant.get(tenant);
+            ResumeJob job = queue.pollFirst();
+            if (queue.isEmpty()) {
+                byTenant.remove(tenant);
+            } else {
+                turns.addLast(tenant);
+            }
+            size--;
+            return job;
+        }
+
+        boolean remove(String id) {
+            for (Iterator<Map.Entry<String, Deque<ResumeJob>>> it = byTenant.entrySet().iterator();
+                 it.hasNext(); ) {
+                Map.Entry<String, Deque<ResumeJob>> entry = it.next();
+                if (entry.getValue().removeIf(job -> job.id.equals(id))) {
+                    if (entry.getValue().isEmpty()) {
+                        it.remove();
+                        turns.remove(entry.getKey());
+                    }
+                    size--;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean isEmpty() { return size == 0; }
+        int size() { return size; }
+    }
+}
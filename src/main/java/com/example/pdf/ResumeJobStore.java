@@ -0,0 +1,106 @@
+package com.example.pdf;
+
+import com.google.gson.Gson;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Directory-backed job store: one sub-directory per job holding job.json
+ * (its state), input.pdf, config.json and, once done, result.pdf.
+ *
+ * Every write goes to a temporary file that is then renamed into place,
+ * so a crash never leaves a half-written job behind.
+ */
+public class ResumeJobStore {
+
+    private static final Gson GSON = new Gson();
+
+    private final Path root;
+
+    public ResumeJobStore(Path root) throws IOException {
+        this.root = root;
+        Files.createDirectories(root);
+    }
+
+    /**
+     * Create a job directory with its config; the caller spools the input
+     * to {@link #inputPath} before the job is queued
+     */
+    public ResumeJob create(String tenant, ResumeJob.Priority priority, String fileName,
+                            ResumeModificationConfig config) throws IOException {
+        ResumeJob job = new ResumeJob(UUID.randomUUID().toString(), tenant, priority, fileName);
+        Files.createDirectories(dir(job.id));
+        write(dir(job.id).resolve("config.json"), GSON.toJson(config));
+        save(job);
+        return job;
+    }
+
+    public void save(ResumeJob job) throws IOException {
+        write(dir(job.id).resolve("job.json"), GSON.toJson(job));
+    }
+
+    /**
+     * The stored job, or null if there is none (or it is unreadable)
+     */
+    public ResumeJob find(String id) {
+        // Ids are UUIDs; anything else could walk out of the store
+        if (!id.matches("[0-9a-fA-F-]{36}")) return null;
+        Path file = dir(id).resolve("job.json");
+        if (!Files.exists(file)) return null;
+
+        try {
+            return GSON.fromJson(Files.readString(file), ResumeJob.class);
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Warning: unreadable job " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    public ResumeModificationConfig loadConfig(ResumeJob job) throws IOException {
+        return GSON.fromJson(Files.readString(dir(job.id).resolve("config.json")),
+                             ResumeModificationConfig.class);
+    }
+
+    /**
+     * Every stored job, oldest submission first
+     */
+    public List<ResumeJob> list() throws IOException {
+        List<ResumeJob> jobs = new ArrayList<>();
+        try (Stream<Path> dirs = Files.list(root)) {
+            for (Path jobDir : (Iterable<Path>) dirs::iterator) {
+                ResumeJob job = find(jobDir.getFileName().toString());
+                if (job != null) jobs.add(job);
+            }
+        }
+        jobs.sort(Comparator.comparingLong(ResumeJob::getSubmittedAt));
+        return jobs;
+    }
+
+    public void delete(String id) throws IOException {
+        Path jobDir = dir(id);
+        if (!Files.exists(jobDir)) return;
+        try (Stream<Path> files = Files.list(jobDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(jobDir);
+    }
+
+    public Path inputPath(ResumeJob job) { return dir(job.id).resolve("input.pdf"); }
+    public Path resultPath(ResumeJob job) { return dir(job.id).resolve("result.pdf"); }
+
+    private Path dir(String id) {
+        return root.resolve(id);
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(tmp, content.getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.pdf;
+
+import io.micrometer.core.instrument.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters for the editing pipeline, recorded in Micrometer's global
+ * registry. Spring Boot adds its registries there, so the service exposes
+ * them at /actuator/prometheus; in the CLI nothing is registered and
+ * recording costs next to nothing.
+ *
+ * <pre>
+ * resume.load                       timer, plus resume.load.allocated
+ * resume.analysis{step}             extract, layout, fonts, sections
+ * resume.edit{type}                 experience, skill, certification, wrap
+ * resume.save{phase}                commit (edit streams), images, compress, write (serialise)
+ * resume.pages, resume.glyphs       per document
+ * resume.bytes.in, resume.bytes.out per document
+ * resume.images.saved               per document, when images are downsampled
+ * resume.images.failed              counter: images left as they were because they couldn't be decoded
+ * resume.fonts.fallback{source}     counter: file (resume.fonts.dir), standard (standard 14)
+ * *.allocated.unmeasured            counter per timer: steps whose allocation couldn't be measured
+ * </pre>
+ *
+ * Every timer has a matching ".allocated" summary with the bytes the
+ * calling thread allocated during the step, and publishes a histogram so
+ * percentiles can be aggregated across instances. The JVM doesn't count
+ * allocation for virtual threads. Steps on platform threads (the
+ * service's workers, job workers, the batch pipeline's CPU stages) get
+ * their allocation measured; steps on virtual threads (the service's
+ * streaming save, the batch load and save stages) record their timing and
+ * count in ".allocated.unmeasured" instead.
+ */
+public final class ResumeMetrics {
+
+    public static final String LOAD = "resume.load";
+    public static final String ANALYSIS = "resume.analysis";
+    public static final String EDIT = "resume.edit";
+    public static final String SAVE = "resume.save";
+
+    private ResumeMetrics() {
+    }
+
+    /**
+     * A step in progress; stop it once to record it
+     */
+    public static Sample start() {
+        return new Sample();
+    }
+
+    public static <T> T time(String name, String tag, String value, Step<T> step) throws IOException {
+        Sample sample = start();
+        try {
+            return step.run();
+        } finally {
+            sample.stop(name, tag, value);
+        }
+    }
+
+    public static void time(String name, String tag, String value, Action action) throws IOException {
+        time(name, tag, value, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * A finished load, from the figures DocumentLoader already measures
+     */
+    static void recordLoad(DocumentLoader.LoadReport report, int pages) {
+        timer(LOAD, Tags.empty()).record(report.millis, TimeUnit.MILLISECONDS);
+        if (report.allocatedBytes >= 0) {
+            bytes(LOAD + ".allocated", Tags.empty()).record(report.allocatedBytes);
+        } else {
+            Metrics.globalRegistry.counter(LOAD + ".allocated.unmeasured").increment();
+        }
+        if (report.fileSize >= 0) {
+            bytes("resume.bytes.in", Tags.empty()).record(report.fileSize);
+        }
+        DistributionSummary.builder("resume.pages")
+            .publishPercentileHistogram()
+            .register(Metrics.globalRegistry)
+            .record(pages);
+    }
+
+    static void recordGlyphs(long glyphs) {
+        DistributionSummary.builder("resume.glyphs")
+            .publishPercentileHistogram()
+            .register(Metrics.globalRegistry)
+            .record(glyphs);
+    }
+
+    static void recordBytesOut(long bytes) {
+        bytes("resume.bytes.out", Tags.empty()).record(bytes);
+    }
+
+    static void recordImageBytesSaved(long bytes) {
+        bytes("resume.images.saved", Tags.empty()).record(bytes);
+    }
+
+    static void recordImageFailures(int images) {
+        if (images > 0) {
+            Metrics.globalRegistry.counter("resume.images.failed").increment(images);
+        }
+    }
+
+    static void recordFontFallback(String source) {
+        Metrics.globalRegistry.counter("resume.fonts.fallback", "source", source).increment();
+    }
+
+    private static Timer timer(String name, Tags tags) {
+        return Timer.builder(name)
+            .tags(tags)
+            .publishPercentileHistogram()
+            .register(Metrics.globalRegistry);
+    }
+
+    private static DistributionSummary bytes(String name, Tags tags) {
+        return DistributionSummary.builder(name)
+            .baseUnit("bytes")
+            .tags(tags)
+            .publishPercentileHistogram()
+            .register(Metrics.globalRegistry);
+    }
+
+    /**
+     * Start time and thread allocation at the beginning of a step
+     */
+    public static class Sample {
+        private final long startNanos = System.nanoTime();
+        private final long startAllocated = DocumentLoader.HeapProbe.allocatedBytes();
+
+        public void stop(String name, String tag, String value) {
+            long nanos = System.nanoTime() - startNanos;
+            Tags tags = Tags.of(tag, value);
+            timer(name, tags).record(nanos, TimeUnit.NANOSECONDS);
+            if (startAllocated >= 0) {
+                bytes(name + ".allocated", tags)
+                    .record(DocumentLoader.HeapProbe.allocatedBytes() - startAllocated);
+            } else {
+                Metrics.globalRegistry.counter(name + ".allocated.unmeasured", tags).increment();
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Step<T> {
+        T run() throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface Action {
+        void run() throws IOException;
+    }
+}
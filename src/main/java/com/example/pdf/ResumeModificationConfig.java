@@ -61,6 +61,40 @@ public class ResumeModificationConfig {
         return newCertifications;
     }
     
+    /**
+     * Check a config that came from JSON or YAML rather than the Builder
+     */
+    public void validate() {
+        if (newExperiences == null || skillModifications == null || newCertifications == null) {
+            throw new IllegalArgumentException("Config lists may be empty but not null");
+        }
+        for (int i = 0; i < newExperiences.size(); i++) {
+            ExperienceEntry entry = newExperiences.get(i);
+            String where = "newExperiences[" + i + "]";
+            require(entry, where);
+            require(entry.getJobTitle(), where + ".jobTitle");
+            require(entry.getCompany(), where + ".company");
+            require(entry.getDuration(), where + ".duration");
+            require(entry.getResponsibilities(), where + ".responsibilities");
+            for (int j = 0; j < entry.getResponsibilities().size(); j++) {
+                require(entry.getResponsibilities().get(j), where + ".responsibilities[" + j + "]");
+            }
+        }
+        for (Map.Entry<String, String> skill : skillModifications.entrySet()) {
+            require(skill.getKey(), "skillModifications key");
+            require(skill.getValue(), "skillModifications[" + skill.getKey() + "]");
+        }
+        for (int i = 0; i < newCertifications.size(); i++) {
+            require(newCertifications.get(i), "newCertifications[" + i + "]");
+        }
+    }
+    
+    private static void require(Object value, String field) {
+        if (value == null) {
+            throw new IllegalArgumentException(field + " is missing");
+        }
+    }
+    
     // Experience entry class
     public static class ExperienceEntry {
         private String jobTitle;
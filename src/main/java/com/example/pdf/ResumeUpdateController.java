@@ -0,0 +1,188 @@
+package com.example.pdf;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import jakarta.annotation.PreDestroy;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.*;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.*;
+import java.time.Duration;
+import java.util.concurrent.*;
+
+/**
+ * HTTP front end for {@link ResumeEditor}.
+ *
+ * POST /api/resumes/update takes a multipart "file" (the PDF) and an
+ * optional "config" part holding a ResumeModificationConfig as JSON. The
+ * upload is handed to the loader as a stream, and the edited document is
+ * streamed back in the response. Upload sizes are capped by the
+ * spring.servlet.multipart limits, and load, analysis and editing must
+ * finish within resume.service.timeout.
+ *
+ * Request threads are virtual. Loading, analysis and editing are CPU-bound
+ * and run on a pool of resume.service.workers platform threads (default:
+ * one per core), where ResumeMetrics can measure their allocation. The
+ * save streams to the client from the request thread, so its allocation
+ * is reported as not measured.
+ *
+ * At most resume.service.queue requests wait for a worker; beyond that a
+ * request is refused with 503 straight away. A request that times out
+ * while still queued is dropped, so abandoned work doesn't pile up ahead
+ * of later requests.
+ */
+@RestController
+@RequestMapping("/api/resumes")
+public class ResumeUpdateController {
+
+    private static final Gson GSON = new Gson();
+
+    private final ThreadPoolExecutor workers;
+    private final DocumentLoader loader = new DocumentLoader();
+    private final Duration timeout;
+
+    public ResumeUpdateController(@Value("${resume.service.timeout:30s}") Duration timeout,
+                                  @Value("${resume.service.workers:0}") int workers,
+                                  @Value("${resume.service.queue:32}") int queue) {
+        this.timeout = timeout;
+        int threads = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                                              new ArrayBlockingQueue<>(Math.max(1, queue)));
+    }
+
+    @PostMapping(value = "/update",
+                 consumes = MediaType.MULTIPART_FORM_DATA_VALUE,
+                 produces = MediaType.APPLICATION_PDF_VALUE)
+    public ResponseEntity<StreamingResponseBody> update(
+            @RequestPart("file") MultipartFile file,
+            @RequestPart(value = "config", required = false) String configJson) {
+
+        if (file.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Empty upload");
+        }
+        ResumeModificationConfig config = parseConfig(configJson);
+
+        ResumeEditor editor = prepare(file, config);
+        StreamingResponseBody body = output -> {
+            try {
+                editor.save(output);
+            } finally {
+                editor.close();
+            }
+        };
+
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_PDF)
+            .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(outputName(file.getOriginalFilename()))
+                .build()
+                .toString())
+            .body(body);
+    }
+
+    // Load, analyse and edit under the time limit; only the save streams later
+    private ResumeEditor prepare(MultipartFile file, ResumeModificationConfig config) {
+        CompletableFuture<ResumeEditor> job = new CompletableFuture<>();
+        Future<?> task;
+        try {
+            task = workers.submit(() -> {
+                try {
+                    job.complete(edit(file, config));
+                } catch (Throwable e) {
+                    job.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                "Too many resumes in progress, try again later");
+        }
+
+        try {
+            return job.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            abandon(task, job);
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                "Processing took longer than " + timeout.toSeconds() + "s");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                "Could not process PDF: " + cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abandon(task, job);
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted");
+        }
+    }
+
+    private ResumeEditor edit(MultipartFile file, ResumeModificationConfig config) throws IOException {
+        PDDocument document;
+        try (InputStream input = file.getInputStream()) {
+            document = loader.load(input, file.getSize());
+        }
+        ResumeEditor editor = new ResumeEditor(document);
+        try {
+            editor.analyze();
+            editor.applyConfig(config);
+        } catch (IOException | RuntimeException e) {
+            editor.close();
+            throw e;
+        }
+        return editor;
+    }
+
+    // Drop a task that hasn't started; one already running can't be
+    // interrupted, so its document is released once it finishes
+    private void abandon(Future<?> task, CompletableFuture<ResumeEditor> job) {
+        task.cancel(false);
+        workers.purge();
+        job.thenAccept(ResumeUpdateController::closeQuietly);
+    }
+
+    static ResumeModificationConfig parseConfig(String json) {
+        if (json == null || json.isBlank()) {
+            return ResumeModificationConfig.getDefaultConfig();
+        }
+
+        ResumeModificationConfig config;
+        try {
+            config = GSON.fromJson(json, ResumeModificationConfig.class);
+        } catch (JsonParseException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "Invalid config JSON: " + e.getMessage());
+        }
+        if (config == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Empty config");
+        }
+        try {
+            config.validate();
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        return config;
+    }
+
+    static String outputName(String original) {
+        if (original == null || !original.toLowerCase().endsWith(".pdf")) {
+            return "resume_updated.pdf";
+        }
+        return new File(original).getName().replaceAll("(?i)\\.pdf$", "") + "_updated.pdf";
+    }
+
+    private static void closeQuietly(ResumeEditor editor) {
+        try {
+            editor.close();
+        } catch (IOException ignored) {
+            // Nobody is waiting for this document any more
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdown();
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.pdf;
+
+import java.util.*;
+
+/**
+ * Detects section headers: runs that are, or start with, a header from
+ * the {@link SectionVocabulary} in a font of 11pt or more, stored under
+ * the header's section. Later pages win on duplicates.
+ */
+class SectionConsumer implements AnalysisConsumer {
+    private final SectionVocabulary vocabulary = SectionVocabulary.getDefault();
+    private final Map<String, SectionInfo> sections = new HashMap<>();
+
+    @Override
+    public void textRun(TextRun run) {
+        if (run.getFontSizeInPt() < 11) return; // Body text, not a header
+
+        int header = vocabulary.headerAt(run.getText());
+        if (header >= 0) {
+            String section = vocabulary.section(header);
+            sections.put(section, new SectionInfo(
+                section,
+                run.getPageIndex(),
+                run.getX(),
+                run.getY()
+            ));
+        }
+    }
+
+    @Override
+    public void contribute(DocumentModel.Builder model) {
+        model.setSections(sections);
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.pdf;
+
+class SectionInfo {
+    String name;
+    int pageIndex;
+    float xPosition;
+    float yPosition;
+    
+    public SectionInfo(String name, int page, float x, float y) {
+        this.name = name;
+        this.pageIndex = page;
+        this.xPosition = x;
+        this.yPosition = y;
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.pdf;
+
+import org.apache.pdfbox.pdmodel.*;
+
+import java.io.*;
+import java.util.*;
+
+class SectionMapper {
+    private Map<String, SectionInfo> sections = new HashMap<>();
+    private LazyDocumentModel pages;
+    
+    public void mapSections(PDDocument doc) throws IOException {
+        mapSections(new DocumentAnalyzer()
+            .addConsumer(new SectionConsumer())
+            .analyze(doc));
+    }
+    
+    public void mapSections(DocumentModel model) {
+        sections = new HashMap<>(model.getSections());
+        pages = null;
+    }
+    
+    /**
+     * Look sections up page by page as they are asked for
+     */
+    public void mapSections(LazyDocumentModel lazyPages) {
+        sections = new HashMap<>();
+        pages = lazyPages;
+    }
+    
+    /**
+     * The section under the first name that has one. Lazily mapped
+     * sections take the first page holding any of the names.
+     */
+    public SectionInfo getSection(String... names) throws IOException {
+        for (String name : names) {
+            SectionInfo section = sections.get(name.toUpperCase());
+            if (section != null) return section;
+        }
+        if (pages == null) return null;
+        
+        SectionInfo section = ResumeMetrics.time(ResumeMetrics.ANALYSIS, "step", "sections",
+                                                 () -> pages.findSection(names));
+        if (section != null) {
+            sections.put(section.name, section);
+        }
+        return section;
+    }
+    
+    public int getSectionCount() { return sections.size(); }
+}
@@ -0,0 +1,292 @@
+package com.example.pdf;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * The section headers analysis recognises, compiled into one
+ * Aho–Corasick automaton.
+ *
+ * Each header belongs to a section, so localized headers such as
+ * BERUFSERFAHRUNG or EXPÉRIENCE report the section English resumes use
+ * (WORK EXPERIENCE, EXPERIENCE). Text is scanned once, folding each char
+ * to upper case on the fly, so matching a run allocates nothing no
+ * matter how many headers there are. The automaton is a dense table over
+ * the chars that occur in headers; every other char maps to column 0.
+ *
+ * The default vocabulary is section-vocabulary.txt on the classpath, or
+ * the file named by the resume.sections.vocabulary system property.
+ */
+public final class SectionVocabulary {
+
+    private static final SectionVocabulary DEFAULT = loadDefault();
+
+    private final String[] headers;
+    private final String[] sections;
+
+    // Column of each char: a direct table for Latin-1, binary search above it
+    private final int[] latin = new int[256];
+    private final char[] wideChars;
+    private final int[] wideColumns;
+    private final int columns;
+
+    // next[state * columns + column]; states are trie nodes, 0 is the root
+    private final int[] next;
+    private final int[] depth;
+    // Headers ending at each state, own first, then along the failure links
+    private final int[][] matches;
+
+    public SectionVocabulary(Map<String, List<String>> headersBySection) {
+        List<String> headerList = new ArrayList<>();
+        List<String> sectionList = new ArrayList<>();
+        for (Map.Entry<String, List<String>> entry : headersBySection.entrySet()) {
+            String section = fold(entry.getKey().trim());
+            Set<String> own = new LinkedHashSet<>();
+            own.add(section);
+            for (String header : entry.getValue()) {
+                if (!header.trim().isEmpty()) own.add(fold(header.trim()));
+            }
+            for (String header : own) {
+                headerList.add(header);
+                sectionList.add(section);
+            }
+        }
+        this.headers = headerList.toArray(new String[0]);
+        this.sections = sectionList.toArray(new String[0]);
+
+        // Alphabet
+        TreeSet<Character> wide = new TreeSet<>();
+        int column = 1;
+        for (String header : headers) {
+            for (int i = 0; i < header.length(); i++) {
+                char c = header.charAt(i);
+                if (c < 256) {
+                    if (latin[c] == 0) latin[c] = column++;
+                } else {
+                    wide.add(c);
+                }
+            }
+        }
+        this.wideChars = new char[wide.size()];
+        this.wideColumns = new int[wide.size()];
+        int w = 0;
+        for (char c : wide) {
+            wideChars[w] = c;
+            wideColumns[w++] = column++;
+        }
+        this.columns = column;
+
+        // Trie
+        List<int[]> edges = new ArrayList<>();
+        List<Integer> depths = new ArrayList<>();
+        List<List<Integer>> ends = new ArrayList<>();
+        edges.add(new int[columns]);
+        depths.add(0);
+        ends.add(new ArrayList<>());
+        for (int h = 0; h < headers.length; h++) {
+            int state = 0;
+            for (int i = 0; i < headers[h].length(); i++) {
+                int col = column(headers[h].charAt(i));
+                if (edges.get(state)[col] == 0) {
+                    edges.get(state)[col] = edges.size();
+                    edges.add(new int[columns]);
+                    depths.add(depths.get(state) + 1);
+                    ends.add(new ArrayList<>());
+                }
+                state = edges.get(state)[col];
+            }
+            ends.get(state).add(h);
+        }
+
+        // Failure links, breadth first, folded into a complete transition table
+        int states = edges.size();
+        this.next = new int[states * columns];
+        this.depth = new int[states];
+        this.matches = new int[states][];
+        int[] fail = new int[states];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int col = 0; col < columns; col++) {
+            int child = edges.get(0)[col];
+            next[col] = child;
+            if (child != 0) queue.add(child);
+        }
+        matches[0] = new int[0];
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int col = 0; col < columns; col++) {
+                int child = edges.get(state)[col];
+                if (child != 0) {
+                    fail[child] = next[fail[state] * columns + col];
+                    next[state * columns + col] = child;
+                    queue.add(child);
+                } else {
+                    next[state * columns + col] = next[fail[state] * columns + col];
+                }
+            }
+        }
+        // A state's matches extend those of its failure state, which is shallower
+        for (int state = 0; state < states; state++) {
+            depth[state] = depths.get(state);
+        }
+        Integer[] order = new Integer[states];
+        for (int i = 0; i < states; i++) order[i] = i;
+        Arrays.sort(order, Comparator.comparingInt(s -> depth[s]));
+        for (int state : order) {
+            if (state == 0) continue;
+            int[] inherited = matches[fail[state]];
+            List<Integer> own = ends.get(state);
+            int[] all = new int[own.size() + inherited.length];
+            for (int i = 0; i < own.size(); i++) all[i] = own.get(i);
+            System.arraycopy(inherited, 0, all, own.size(), inherited.length);
+            matches[state] = all;
+        }
+    }
+
+    public static SectionVocabulary getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Read a vocabulary in the section-vocabulary.txt format
+     */
+    public static SectionVocabulary parse(Reader reader) throws IOException {
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        while ((line = lines.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            int equals = line.indexOf('=');
+            String section = equals < 0 ? line : line.substring(0, equals);
+            List<String> list = headers.computeIfAbsent(section.trim(), s -> new ArrayList<>());
+            if (equals >= 0) {
+                list.addAll(Arrays.asList(line.substring(equals + 1).split(",")));
+            }
+        }
+        return new SectionVocabulary(headers);
+    }
+
+    private static SectionVocabulary loadDefault() {
+        String path = System.getProperty("resume.sections.vocabulary");
+        try {
+            if (path != null) {
+                try (Reader reader = Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8)) {
+                    return parse(reader);
+                }
+            }
+            try (InputStream in = SectionVocabulary.class.getResourceAsStream("/section-vocabulary.txt")) {
+                if (in == null) throw new FileNotFoundException("section-vocabulary.txt");
+                return parse(new InputStreamReader(in, StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't read section vocabulary", e);
+        }
+    }
+
+    /**
+     * The header the text is, or starts with as a whole word, ignoring
+     * surrounding whitespace; the longest one if several are
+     *
+     * @return the header's index, or -1
+     */
+    public int headerAt(CharSequence text) {
+        int start = 0;
+        int end = text.length();
+        while (start < end && text.charAt(start) <= ' ') start++;
+        while (end > start && text.charAt(end - 1) <= ' ') end--;
+
+        int found = -1;
+        int state = 0;
+        for (int i = start; i < end; i++) {
+            state = next[state * columns + column(Character.toUpperCase(text.charAt(i)))];
+            // Once the walk leaves the trie the text no longer starts with a header
+            if (depth[state] != i - start + 1) break;
+            if (matches[state].length > 0 && depth[state] == headers[matches[state][0]].length()
+                    && (i + 1 == end || text.charAt(i + 1) == ' ')) {
+                found = matches[state][0];
+            }
+        }
+        return found;
+    }
+
+    /**
+     * The first-listed header that occurs anywhere in the text as whole words
+     *
+     * @return the header's index, or -1
+     */
+    public int firstContained(CharSequence text) {
+        int found = -1;
+        int state = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            state = next[state * columns + column(Character.toUpperCase(text.charAt(i)))];
+            if (i + 1 < length && Character.isLetterOrDigit(text.charAt(i + 1))) continue;
+            for (int header : matches[state]) {
+                int start = i + 1 - headers[header].length();
+                if ((found < 0 || header < found)
+                        && (start == 0 || !Character.isLetterOrDigit(text.charAt(start - 1)))) {
+                    found = header;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Every header that occurs anywhere in the text as whole words
+     *
+     * @return the headers' indexes, empty if none
+     */
+    public BitSet allContained(CharSequence text) {
+        BitSet found = new BitSet(headers.length);
+        int state = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            state = next[state * columns + column(Character.toUpperCase(text.charAt(i)))];
+            if (i + 1 < length && Character.isLetterOrDigit(text.charAt(i + 1))) continue;
+            for (int header : matches[state]) {
+                int start = i + 1 - headers[header].length();
+                if (start == 0 || !Character.isLetterOrDigit(text.charAt(start - 1))) {
+                    found.set(header);
+                }
+            }
+        }
+        return found;
+    }
+
+    public boolean contains(CharSequence text) {
+        return firstContained(text) >= 0;
+    }
+
+    /**
+     * The section a header belongs to
+     */
+    public String section(int header) {
+        return sections[header];
+    }
+
+    public String header(int header) {
+        return headers[header];
+    }
+
+    public int size() {
+        return headers.length;
+    }
+
+    private int column(char c) {
+        if (c < 256) return latin[c];
+        int i = Arrays.binarySearch(wideChars, c);
+        return i < 0 ? 0 : wideColumns[i];
+    }
+
+    // Upper case char by char, the way text is folded while matching
+    private static String fold(String header) {
+        char[] chars = header.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toUpperCase(chars[i]);
+        }
+        return new String(chars);
+    }
+}
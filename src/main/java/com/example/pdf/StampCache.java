@@ -0,0 +1,250 @@
+package com.example.pdf;
+
+import org.apache.pdfbox.cos.*;
+import org.apache.pdfbox.pdmodel.*;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType3Font;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size-bounded LRU cache of inserted text blocks, laid out once and
+ * placed as Form XObjects.
+ *
+ * Bulk runs add the same certification or experience entry to many
+ * resumes built from one template. The first time a block is drawn for a
+ * key (template, fonts, width and text) its operators are recorded at the
+ * origin and compressed. Every later document gets a form made from those
+ * bytes, with the document's own fonts as its resources, and places it
+ * with one cm and Do. Nothing is wrapped, encoded or compressed again.
+ *
+ * Fonts are identified by a digest of their whole font object, font
+ * program, encoding and widths included, not by name: two documents can
+ * embed different fonts under one BaseFont, and text laid out with one
+ * must not be drawn with the other.
+ *
+ * Fallback fonts that are embedded as subsets can't be stamped: their
+ * glyphs are only registered for embedding when the document encodes
+ * text with them.
+ */
+public class StampCache {
+
+    /**
+     * Draws a block with its origin at (x, y)
+     */
+    public interface Block {
+        void draw(TextBlockWriter writer, float x, float y) throws IOException;
+    }
+
+    // Digests by font object; weak, so a closed document's fonts can go
+    private static final Map<COSDictionary, String> FONT_KEYS =
+        Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final Map<String, Stamp> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public StampCache(int maxEntries) {
+        this.entries = new LinkedHashMap<String, Stamp>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Stamp> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Cache sized by resume.stamps.size, or null when that is unset or 0
+     */
+    public static StampCache fromSystemProperties() {
+        int size = Integer.getInteger("resume.stamps.size", 0);
+        return size > 0 ? new StampCache(size) : null;
+    }
+
+    /**
+     * Whether a block drawn with these fonts can be recorded and reused
+     */
+    public static boolean canStamp(PDFont... fonts) {
+        for (PDFont font : fonts) {
+            if (font.willBeSubset() || font instanceof PDType3Font) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Identifies a font across documents: equal keys mean the same font
+     * program, encoding and metrics
+     */
+    public static String fontKey(PDFont font) throws IOException {
+        return fontKey(font.getCOSObject());
+    }
+
+    static String fontKey(COSDictionary font) throws IOException {
+        String key = FONT_KEYS.get(font);
+        if (key == null) {
+            MessageDigest digest;
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e); // Every JVM has SHA-256
+            }
+            update(digest, font, Collections.newSetFromMap(new IdentityHashMap<>()));
+            key = Base64.getEncoder().encodeToString(digest.digest());
+            FONT_KEYS.put(font, key);
+        }
+        return key;
+    }
+
+    // Feeds an object's structure, and the raw bytes of its streams
+    private static void update(MessageDigest digest, COSBase base, Set<COSBase> seen) throws IOException {
+        if (base instanceof COSObject) {
+            base = ((COSObject) base).getObject();
+        }
+        if (base instanceof COSDictionary) {
+            if (!seen.add(base)) {
+                digest.update((byte) '^');
+                return;
+            }
+            COSDictionary dict = (COSDictionary) base;
+            List<COSName> keys = new ArrayList<>(dict.keySet());
+            keys.sort(Comparator.comparing(COSName::getName));
+            digest.update((byte) '<');
+            for (COSName key : keys) {
+                digest.update(key.getName().getBytes(StandardCharsets.UTF_8));
+                update(digest, dict.getItem(key), seen);
+            }
+            digest.update((byte) '>');
+            if (base instanceof COSStream) {
+                try (InputStream in = ((COSStream) base).createRawInputStream()) {
+                    digest.update(in.readAllBytes());
+                }
+            }
+        } else if (base instanceof COSArray) {
+            digest.update((byte) '[');
+            for (COSBase item : (COSArray) base) {
+                update(digest, item, seen);
+            }
+            digest.update((byte) ']');
+        } else if (base instanceof COSString) {
+            digest.update(((COSString) base).getBytes());
+        } else {
+            digest.update(String.valueOf(base).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * The stamp for key, recording block into document's fonts on a miss
+     */
+    public Stamp get(String key, PDDocument document, Block block) throws IOException {
+        Stamp stamp;
+        synchronized (entries) {
+            stamp = entries.get(key);
+        }
+        if (stamp != null) {
+            hits.incrementAndGet();
+            return stamp;
+        }
+
+        misses.incrementAndGet();
+        stamp = Stamp.record(document, block);
+        synchronized (entries) {
+            entries.put(key, stamp);
+        }
+        return stamp;
+    }
+
+    // Metrics
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("StampCache[%d entries, %d hits, %d misses]",
+                             size(), getHits(), getMisses());
+    }
+
+    /**
+     * A recorded block: compressed operators, their bounds, and the
+     * {@link #fontKey} of the font behind each resource name they use
+     */
+    public static class Stamp {
+        private final byte[] content;
+        private final PDRectangle bbox;
+        private final Map<String, String> fontKeys;
+
+        private Stamp(byte[] content, PDRectangle bbox, Map<String, String> fontKeys) {
+            this.content = content;
+            this.bbox = bbox;
+            this.fontKeys = fontKeys;
+        }
+
+        static Stamp record(PDDocument document, Block block) throws IOException {
+            ByteArrayOutputStream operators = new ByteArrayOutputStream();
+            PDResources resources = new PDResources();
+            PDFormXObject scratch = new PDFormXObject(new COSStream());
+            scratch.setResources(resources);
+
+            TextBlockWriter writer = new TextBlockWriter(
+                new PDPageContentStream(document, scratch, operators));
+            writer.measure();
+            block.draw(writer, 0, 0);
+            writer.close();
+
+            Map<String, String> fontKeys = new LinkedHashMap<>();
+            COSDictionary fonts = resources.getCOSObject().getCOSDictionary(COSName.FONT);
+            if (fonts != null) {
+                for (COSName name : fonts.keySet()) {
+                    COSBase font = fonts.getDictionaryObject(name);
+                    if (font instanceof COSDictionary) {
+                        fontKeys.put(name.getName(), fontKey((COSDictionary) font));
+                    }
+                }
+            }
+            byte[] content = StreamCompressor.deflate(operators.toByteArray(), StreamCompressor.Level.DEFAULT);
+            return new Stamp(content, writer.getBounds(), fontKeys);
+        }
+
+        /**
+         * A form for this stamp in document, drawing with the given fonts
+         * under the names they were recorded with
+         */
+        public PDFormXObject toForm(PDDocument document, PDFont... fonts) throws IOException {
+            COSStream stream = document.getDocument().createCOSStream();
+            stream.setItem(COSName.FILTER, COSName.FLATE_DECODE);
+            try (OutputStream out = stream.createRawOutputStream()) {
+                out.write(content);
+            }
+
+            PDResources resources = new PDResources();
+            for (Map.Entry<String, String> entry : fontKeys.entrySet()) {
+                PDFont font = null;
+                for (PDFont candidate : fonts) {
+                    if (fontKey(candidate).equals(entry.getValue())) font = candidate;
+                }
+                if (font == null) {
+                    throw new IOException("No font for stamp resource /" + entry.getKey());
+                }
+                resources.put(COSName.getPDFName(entry.getKey()), font);
+            }
+
+            PDFormXObject form = new PDFormXObject(stream);
+            form.setBBox(new PDRectangle(bbox.getLowerLeftX(), bbox.getLowerLeftY(),
+                                         bbox.getWidth(), bbox.getHeight()));
+            form.setResources(resources);
+            return form;
+        }
+    }
+}
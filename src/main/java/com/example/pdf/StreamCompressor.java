@@ -0,0 +1,142 @@
+package com.example.pdf;
+
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.Deflater;
+
+/**
+ * Flate-compresses a document's rewritten content streams together,
+ * just before it is saved.
+ *
+ * Editors write new content uncompressed, so it can still be read back
+ * and rewritten cheaply, and hand the stream to {@link DocumentSaver}.
+ * At save time every such stream is deflated on a shared pool and its
+ * encoded bytes stored raw with /Filter /FlateDecode; the serializer then
+ * only copies them. Reading and storing stream bytes stays on the calling
+ * thread, since a document's scratch buffers aren't thread safe; only the
+ * Deflater work runs concurrently.
+ *
+ * The pool size comes from resume.save.compressThreads (default: one per
+ * core) and the level from resume.save.compression.
+ */
+public class StreamCompressor {
+
+    public enum Level {
+        /** Interactive edits: quickest, somewhat larger output */
+        FAST(Deflater.BEST_SPEED),
+        /** zlib's default, what PDFBox uses */
+        DEFAULT(Deflater.DEFAULT_COMPRESSION),
+        /** Archival output: smallest, slowest */
+        MAX(Deflater.BEST_COMPRESSION);
+
+        final int deflaterLevel;
+
+        Level(int deflaterLevel) {
+            this.deflaterLevel = deflaterLevel;
+        }
+    }
+
+    private static final ExecutorService POOL = newPool(
+        Integer.getInteger("resume.save.compressThreads", Runtime.getRuntime().availableProcessors()));
+
+    private final Level level;
+
+    public StreamCompressor(Level level) {
+        this.level = level;
+    }
+
+    public static StreamCompressor fromSystemProperties() {
+        return new StreamCompressor(
+            Level.valueOf(System.getProperty("resume.save.compression", Level.DEFAULT.name())));
+    }
+
+    public Level getLevel() { return level; }
+
+    /**
+     * Compress every stream that is still unfiltered; streams that were
+     * given a filter since they were written are left alone
+     *
+     * @return the number of streams compressed
+     */
+    public int compress(Collection<COSStream> streams) throws IOException {
+        List<COSStream> targets = new ArrayList<>();
+        List<byte[]> contents = new ArrayList<>();
+        for (COSStream stream : streams) {
+            if (stream.getFilters() != null) continue;
+            try (InputStream in = stream.createRawInputStream()) {
+                contents.add(in.readAllBytes());
+            }
+            targets.add(stream);
+        }
+        if (targets.isEmpty()) return 0;
+
+        List<byte[]> encoded = new ArrayList<>(targets.size());
+        if (targets.size() == 1) {
+            // Not worth a handoff
+            encoded.add(deflate(contents.get(0)));
+        } else {
+            List<Future<byte[]>> futures = new ArrayList<>(targets.size());
+            for (byte[] content : contents) {
+                futures.add(POOL.submit(() -> deflate(content)));
+            }
+            for (Future<byte[]> future : futures) {
+                encoded.add(join(future));
+            }
+        }
+
+        for (int i = 0; i < targets.size(); i++) {
+            COSStream stream = targets.get(i);
+            try (OutputStream out = stream.createRawOutputStream()) {
+                out.write(encoded.get(i));
+            }
+            stream.setItem(COSName.FILTER, COSName.FLATE_DECODE);
+        }
+        return targets.size();
+    }
+
+    private byte[] deflate(byte[] data) {
+        return deflate(data, level);
+    }
+
+    /**
+     * Flate-encode data in one go at the given level
+     */
+    static byte[] deflate(byte[] data, Level level) {
+        Deflater deflater = new Deflater(level.deflaterLevel);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 16);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] join(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing streams");
+        } catch (ExecutionException e) {
+            throw new IOException("Compressing a stream failed", e.getCause());
+        }
+    }
+
+    private static ExecutorService newPool(int threads) {
+        return Executors.newFixedThreadPool(Math.max(1, threads), task -> {
+            Thread thread = new Thread(task, "stream-compressor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
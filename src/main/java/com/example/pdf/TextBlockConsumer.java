@@ -0,0 +1,26 @@
+package com.example.pdf;
+
+import java.util.*;
+
+/**
+ * Keeps every run as a positioned text block
+ */
+class TextBlockConsumer implements AnalysisConsumer {
+    private final List<LayoutDetector.TextBlock> blocks = new ArrayList<>();
+
+    @Override
+    public void textRun(TextRun run) {
+        blocks.add(new LayoutDetector.TextBlock(
+            run.getText().trim(),
+            run.getX(),
+            run.getY(),
+            run.getFontSizeInPt(),
+            run.getPageIndex()
+        ));
+    }
+
+    @Override
+    public void contribute(DocumentModel.Builder model) {
+        model.setTextBlocks(blocks);
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.pdf;
+
+import org.apache.pdfbox.pdmodel.*;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.util.Matrix;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Writes an inserted block of text as a single text object.
+ *
+ * All lines share one BT/ET pair. The first line is placed absolutely,
+ * later lines with relative Td moves, and runs of lines spaced evenly at
+ * the same x switch to TL leading and T*. Tf is only emitted when the
+ * font or size actually changes. The block is appended to the page as
+ * one compressed stream when the writer is closed.
+ */
+public class TextBlockWriter implements Closeable {
+
+    private final PDPageContentStream stream;
+    private boolean inText;
+    private boolean positioned;
+    private PDFont font;
+    private float fontSize;
+
+    // Start of the current line, which Td and T* move relative to
+    private float lineX;
+    private float lineY;
+    private float leading = Float.NaN;
+    private float lastDy = Float.NaN;
+
+    // minX, minY, maxX, maxY of the lines shown, when measuring
+    private float[] bounds;
+
+    public TextBlockWriter(PDDocument document, PDPage page) throws IOException {
+        this(new PDPageContentStream(
+            document, page, PDPageContentStream.AppendMode.APPEND, true, true));
+    }
+
+    /**
+     * Write into a stream the caller places, as {@link EditSession} does
+     */
+    TextBlockWriter(PDPageContentStream stream) {
+        this.stream = stream;
+    }
+
+    public TextBlockWriter setFont(PDFont newFont, float size) throws IOException {
+        if (newFont == font && size == fontSize) {
+            return this;
+        }
+        begin();
+        stream.setFont(newFont, size);
+        font = newFont;
+        fontSize = size;
+        return this;
+    }
+
+    /**
+     * Show one line of text with its baseline starting at (x, y)
+     */
+    public TextBlockWriter showLine(float x, float y, String text) throws IOException {
+        moveTo(x, y);
+        stream.showText(text);
+        if (bounds != null) {
+            float width = font.getStringWidth(text) / 1000 * fontSize;
+            bounds[0] = Math.min(bounds[0], x);
+            bounds[1] = Math.min(bounds[1], y - fontSize / 2);
+            bounds[2] = Math.max(bounds[2], x + width);
+            bounds[3] = Math.max(bounds[3], y + fontSize);
+        }
+        return this;
+    }
+
+    /**
+     * Draw a form with its origin at (x, y), leaving the text state as it was
+     */
+    public TextBlockWriter drawForm(PDFormXObject form, float x, float y) throws IOException {
+        if (inText) {
+            stream.endText();
+            inText = false;
+            positioned = false;
+        }
+        stream.saveGraphicsState();
+        stream.transform(Matrix.getTranslateInstance(x, y));
+        stream.drawForm(form);
+        stream.restoreGraphicsState();
+        return this;
+    }
+
+    /**
+     * Track the area the shown lines cover, for {@link #getBounds}
+     */
+    void measure() {
+        bounds = new float[] { Float.MAX_VALUE, Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE };
+    }
+
+    /**
+     * Area covered by the lines shown since {@link #measure}, allowing a
+     * font size above each baseline and half of one below
+     */
+    PDRectangle getBounds() {
+        if (bounds == null || bounds[0] > bounds[2]) {
+            return new PDRectangle(0, 0, 0, 0);
+        }
+        return new PDRectangle(bounds[0], bounds[1], bounds[2] - bounds[0], bounds[3] - bounds[1]);
+    }
+
+    private void moveTo(float x, float y) throws IOException {
+        begin();
+        if (!positioned) {
+            // BT resets the line matrix, so the first move is absolute
+            stream.newLineAtOffset(x, y);
+            positioned = true;
+            lineX = x;
+            lineY = y;
+            return;
+        }
+
+        float dx = x - lineX;
+        float dy = y - lineY;
+        if (dx == 0 && dy < 0 && (dy == -leading || dy == lastDy)) {
+            if (dy != -leading) {
+                stream.setLeading(-dy);
+                leading = -dy;
+            }
+            stream.newLine();
+        } else {
+            stream.newLineAtOffset(dx, dy);
+        }
+        lastDy = dy;
+        lineX = x;
+        lineY = y;
+    }
+
+    private void begin() throws IOException {
+        if (!inText) {
+            stream.beginText();
+            inText = true;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (inText) {
+            stream.endText();
+            inText = false;
+        }
+        stream.close();
+    }
+}
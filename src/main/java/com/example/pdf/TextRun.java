@@ -0,0 +1,72 @@
+package com.example.pdf;
+
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.text.TextPosition;
+
+import java.util.*;
+
+/**
+ * A run of glyphs handed to analysis consumers. The instance is reused
+ * between callbacks, so consumers must copy anything they keep.
+ */
+class TextRun {
+    private int pageIndex;
+    private CharSequence chars;
+    private String text;
+    private PDFont font;
+    private float fontSizeInPt;
+    private float y;
+    private final FloatList positionXs = new FloatList(64);
+    private FloatList xs = positionXs;
+
+    /**
+     * A word from the text stripper
+     */
+    void reset(int page, String txt, List<TextPosition> pos) {
+        // Run-level attributes come from the first glyph, as the strippers did
+        TextPosition first = pos.get(0);
+        this.pageIndex = page;
+        this.chars = txt;
+        this.text = txt;
+        this.font = first.getFont();
+        this.fontSizeInPt = first.getFontSizeInPt();
+        this.y = first.getYDirAdj();
+        this.xs = positionXs;
+        xs.clear();
+        for (TextPosition position : pos) {
+            xs.add(position.getXDirAdj());
+        }
+    }
+
+    /**
+     * A run from the glyph reader, which keeps chars and glyph positions
+     * until the next run
+     */
+    void reset(int page, CharSequence runChars, PDFont runFont, float size,
+               float runY, FloatList glyphXs) {
+        this.pageIndex = page;
+        this.chars = runChars;
+        this.text = null;
+        this.font = runFont;
+        this.fontSizeInPt = size;
+        this.y = runY;
+        this.xs = glyphXs;
+    }
+
+    public int getPageIndex() { return pageIndex; }
+    public int getGlyphCount() { return xs.size(); }
+    public float getGlyphX(int i) { return xs.get(i); }
+
+    /**
+     * The run's text, made into a String the first time it is asked for
+     */
+    public String getText() {
+        if (text == null) text = chars.toString();
+        return text;
+    }
+
+    public float getX() { return xs.get(0); }
+    public float getY() { return y; }
+    public float getFontSizeInPt() { return fontSizeInPt; }
+    public PDFont getFont() { return font; }
+}
@@ -0,0 +1,288 @@
+package com.example.pdf;
+
+import org.apache.pdfbox.pdmodel.font.PDFont;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Greedy word wrapping in linear time.
+ *
+ * Each word is measured once from cached per-(font, codepoint) advance
+ * widths and added to a running line width, instead of re-measuring the
+ * whole line for every word. The width cache is shared by every document
+ * in the process and is dropped along with its font.
+ *
+ * Lines break at spaces, like the original wrapText, and additionally at
+ * soft hyphens (U+00AD) inside words that don't fit. A soft hyphen is
+ * invisible unless a line breaks there, in which case a "-" is drawn.
+ */
+public final class TextWrapper {
+
+    static final char SOFT_HYPHEN = '\u00AD';
+
+    private static final Map<PDFont, GlyphWidths> WIDTHS =
+        Collections.synchronizedMap(new WeakHashMap<>());
+
+    private TextWrapper() {}
+
+    /**
+     * Break text into lines no wider than maxWidth. A single word wider
+     * than maxWidth with no soft hyphen stays on a line of its own.
+     */
+    public static LineBreaks wrap(String text, PDFont font, float fontSize, float maxWidth)
+            throws IOException {
+        GlyphWidths widths = widthsFor(font);
+        float spaceUnits = widths.get(font, ' ');
+        float hyphenUnits = widths.get(font, '-');
+        LineBreaks breaks = new LineBreaks(text);
+
+        // Trailing spaces produce no words, as with String.split
+        int length = text.length();
+        while (length > 0 && text.charAt(length - 1) == ' ') {
+            length--;
+        }
+
+        int lineStart = 0;
+        int lineEnd = 0;
+        float lineUnits = 0;
+        int pos = 0;
+
+        while (pos < length) {
+            int wordEnd = text.indexOf(' ', pos);
+            if (wordEnd < 0 || wordEnd > length) wordEnd = length;
+
+            float wordUnits = widths.measure(font, text, pos, wordEnd);
+            boolean lineEmpty = lineEnd == lineStart;
+            float candidate = lineEmpty ? wordUnits : lineUnits + spaceUnits + wordUnits;
+
+            if (lineEmpty || !exceeds(candidate, fontSize, maxWidth)) {
+                if (lineEmpty) lineStart = pos;
+                lineEnd = wordEnd;
+                lineUnits = candidate;
+            } else {
+                // Try to finish this line with part of the word
+                int split = lastFittingHyphen(text, pos, wordEnd, font, widths,
+                                              lineUnits + spaceUnits, hyphenUnits,
+                                              fontSize, maxWidth);
+                if (split > pos) {
+                    breaks.add(lineStart, split, true);
+                    pos = split + 1;
+                } else {
+                    breaks.add(lineStart, lineEnd, false);
+                }
+                lineStart = pos;
+                lineEnd = wordEnd;
+                lineUnits = widths.measure(font, text, pos, wordEnd);
+            }
+
+            // A word that overflows a line on its own is split at its soft hyphens
+            while (lineStart == pos && exceeds(lineUnits, fontSize, maxWidth)) {
+                int split = lastFittingHyphen(text, pos, wordEnd, font, widths, 0, hyphenUnits,
+                                              fontSize, maxWidth);
+                if (split <= pos) {
+                    split = text.indexOf(SOFT_HYPHEN, pos + 1);
+                    if (split < 0 || split >= wordEnd) break;
+                }
+                breaks.add(lineStart, split, true);
+                pos = split + 1;
+                lineStart = pos;
+                lineUnits = widths.measure(font, text, pos, wordEnd);
+            }
+
+            pos = wordEnd + 1;
+        }
+
+        if (lineEnd > lineStart) {
+            breaks.add(lineStart, lineEnd, false);
+        }
+        return breaks;
+    }
+
+    /**
+     * Width of text in text-space units at the given size
+     */
+    public static float width(String text, PDFont font, float fontSize) throws IOException {
+        return widthsFor(font).measure(font, text, 0, text.length()) / 1000 * fontSize;
+    }
+
+    // Same expression the old wrapText compared with, so breaks land identically
+    private static boolean exceeds(float units, float fontSize, float maxWidth) {
+        return units / 1000 * fontSize > maxWidth;
+    }
+
+    /**
+     * Offset of the last soft hyphen in [from, to) whose prefix plus a drawn
+     * hyphen fits after prefixUnits, or -1
+     */
+    private static int lastFittingHyphen(String text, int from, int to,
+                                         PDFont font, GlyphWidths widths, float prefixUnits, float hyphenUnits,
+                                         float fontSize, float maxWidth) throws IOException {
+        int best = -1;
+        float units = prefixUnits;
+        for (int i = from; i < to; ) {
+            int cp = text.codePointAt(i);
+            if (cp == SOFT_HYPHEN) {
+                if (exceeds(units + hyphenUnits, fontSize, maxWidth)) break;
+                best = i;
+            } else {
+                units += widths.get(font, cp);
+                if (exceeds(units, fontSize, maxWidth)) break;
+            }
+            i += Character.charCount(cp);
+        }
+        return best;
+    }
+
+    private static GlyphWidths widthsFor(PDFont font) {
+        synchronized (WIDTHS) {
+            return WIDTHS.computeIfAbsent(font, f -> new GlyphWidths());
+        }
+    }
+
+    /**
+     * Line breaks as offsets into the wrapped text; strings are only built
+     * when a caller asks for one
+     */
+    public static final class LineBreaks {
+        private final String text;
+        private int[] starts = new int[8];
+        private int[] ends = new int[8];
+        private boolean[] hyphenated = new boolean[8];
+        private int count;
+
+        LineBreaks(String text) {
+            this.text = text;
+        }
+
+        void add(int start, int end, boolean hyphen) {
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+                hyphenated = Arrays.copyOf(hyphenated, count * 2);
+            }
+            starts[count] = start;
+            ends[count] = end;
+            hyphenated[count] = hyphen;
+            count++;
+        }
+
+        public int size() { return count; }
+        public int getStart(int line) { return starts[line]; }
+        public int getEnd(int line) { return ends[line]; }
+        public boolean isHyphenated(int line) { return hyphenated[line]; }
+
+        /**
+         * Text to draw for a line: soft hyphens removed, "-" added at a hyphen break
+         */
+        public String getLine(int line) {
+            int start = starts[line];
+            int end = ends[line];
+            int softHyphen = text.indexOf(SOFT_HYPHEN, start);
+            if ((softHyphen < 0 || softHyphen >= end) && !hyphenated[line]) {
+                return text.substring(start, end);
+            }
+
+            StringBuilder sb = new StringBuilder(end - start + 1);
+            for (int i = start; i < end; i++) {
+                char c = text.charAt(i);
+                if (c != SOFT_HYPHEN) sb.append(c);
+            }
+            if (hyphenated[line]) sb.append('-');
+            return sb.toString();
+        }
+
+        public List<String> toLines() {
+            List<String> lines = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                lines.add(getLine(i));
+            }
+            return lines;
+        }
+    }
+
+    /**
+     * Advance widths of one font in glyph units (1/1000 em), by codepoint.
+     * Latin-1 is a direct lookup; anything else goes through a small
+     * open-addressing map. Unknown widths are NaN. The font is passed in on
+     * every call rather than kept, since a strong reference from here would
+     * pin the weak key in WIDTHS.
+     */
+    static final class GlyphWidths {
+        private final float[] latin = new float[256];
+        private int[] keys = new int[32];
+        private float[] values = new float[32];
+        private int size;
+
+        GlyphWidths() {
+            Arrays.fill(latin, Float.NaN);
+            Arrays.fill(keys, -1);
+        }
+
+        float measure(PDFont font, String text, int from, int to) throws IOException {
+            float units = 0;
+            for (int i = from; i < to; ) {
+                int cp = text.codePointAt(i);
+                if (cp != SOFT_HYPHEN) {
+                    units += get(font, cp);
+                }
+                i += Character.charCount(cp);
+            }
+            return units;
+        }
+
+        float get(PDFont font, int cp) throws IOException {
+            if (cp < 256) {
+                // Racing writers store the same value, so no lock is needed here
+                float w = latin[cp];
+                if (Float.isNaN(w)) {
+                    w = lookup(font, cp);
+                    latin[cp] = w;
+                }
+                return w;
+            }
+            synchronized (this) {
+                int slot = slot(cp);
+                if (keys[slot] == cp) return values[slot];
+
+                float w = lookup(font, cp);
+                keys[slot] = cp;
+                values[slot] = w;
+                if (++size * 2 > keys.length) grow();
+                return w;
+            }
+        }
+
+        private static float lookup(PDFont font, int cp) throws IOException {
+            // Throws for characters the font can't encode, as getStringWidth always did.
+            // PDFont memoises widths in a plain HashMap, and fonts are shared across threads
+            synchronized (font) {
+                return font.getStringWidth(new String(Character.toChars(cp)));
+            }
+        }
+
+        private int slot(int cp) {
+            int mask = keys.length - 1;
+            int slot = (cp * 0x9E3779B1) >>> 16 & mask;
+            while (keys[slot] != -1 && keys[slot] != cp) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            float[] oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new float[oldKeys.length * 2];
+            Arrays.fill(keys, -1);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != -1) {
+                    int slot = slot(oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+    }
+}
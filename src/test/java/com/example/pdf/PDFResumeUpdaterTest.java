@@ -0,0 +1,97 @@
+package com.example.pdf;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.pdfbox.text.TextPosition;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PDFResumeUpdaterTest {
+
+    private static final String INPUT = "input/resume3.pdf";
+
+    /**
+     * resume3 is two columns: WORK EXPERIENCE heads the right one at
+     * top-down y 224, the name and contact details fill the left one
+     */
+    @Test
+    void addExperienceShiftsOnlyTheSectionColumn(@TempDir Path dir) throws IOException {
+        File output = dir.resolve("out.pdf").toFile();
+        PDFResumeUpdater updater = new PDFResumeUpdater();
+        updater.loadPDF(INPUT);
+        updater.addExperience("Senior Software Engineer", "Tech Innovations Inc.",
+                              "Jan 2024 - Present", new String[] {"Led a team", "Shipped things"});
+        updater.savePDF(output.getPath());
+
+        Map<String, Line> before = lines(new File(INPUT));
+        Map<String, Line> after = lines(output);
+
+        // Above the header nothing moves
+        assertUnmoved(before, after, "EDUCATION");
+        assertUnmoved(before, after, "Diploma in Instrumentation and Control");
+        assertUnmoved(before, after, "WORK EXPERIENCE");
+
+        // The left column stays where it was
+        assertUnmoved(before, after, "ARPIT");
+        assertUnmoved(before, after, "PROFILE");
+        assertUnmoved(before, after, "CONTACT");
+
+        // The new entry sits under the header, the old one moves below it
+        Line header = after.get("WORK EXPERIENCE");
+        Line entry = after.get("Senior Software Engineer");
+        Line moved = after.get("Vatsalya Digital Solution");
+        assertNotNull(entry, "new entry missing");
+        assertEquals(header.page, entry.page);
+        assertTrue(entry.y > header.y && entry.y < header.y + 40,
+                   "new entry at " + entry.y + ", header at " + header.y);
+        assertEquals(before.get("Vatsalya Digital Solution").page, moved.page);
+        assertTrue(moved.y > before.get("Vatsalya Digital Solution").y + 20,
+                   "following entry didn't move: " + moved.y);
+        assertTrue(moved.y > entry.y);
+    }
+
+    private static void assertUnmoved(Map<String, Line> before, Map<String, Line> after, String text) {
+        Line was = before.get(text);
+        Line is = after.get(text);
+        assertNotNull(was, text + " missing from input");
+        assertNotNull(is, text + " missing from output");
+        assertEquals(was.page, is.page, text + " changed page");
+        assertEquals(was.y, is.y, 0.5, text + " moved");
+    }
+
+    /** First occurrence of every text line, with its page and top-down baseline */
+    private static Map<String, Line> lines(File pdf) throws IOException {
+        Map<String, Line> lines = new LinkedHashMap<>();
+        try (PDDocument doc = PDDocument.load(pdf)) {
+            PDFTextStripper stripper = new PDFTextStripper() {
+                @Override
+                protected void writeString(String text, List<TextPosition> positions) {
+                    if (positions.isEmpty()) return;
+                    lines.putIfAbsent(text.trim(),
+                        new Line(getCurrentPageNo(), positions.get(0).getYDirAdj()));
+                }
+            };
+            stripper.getText(doc);
+        }
+        return lines;
+    }
+
+    private static class Line {
+        final int page;
+        final float y;
+
+        Line(int page, float y) {
+            this.page = page;
+            this.y = y;
+        }
+    }
+}
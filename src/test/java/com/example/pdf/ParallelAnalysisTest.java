@@ -0,0 +1,61 @@
+package com.example.pdf;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelAnalysisTest {
+
+    private static final String INPUT = "input/resume4.pdf";
+
+    /**
+     * resume4 has two pages, and two SKILLS headers on the first: KEY
+     * SKILLS at top-down y 432, then TECHNICAL SKILLS at 650, which a
+     * sequential pass keeps
+     */
+    @Test
+    void parallelAnalysisMatchesSequential(@TempDir Path dir) throws IOException {
+        PDFResumeUpdater sequential = analyze(1);
+        PDFResumeUpdater parallel = analyze(2);
+        try {
+            Map<String, PDFResumeUpdater.SectionInfo> expected = sequential.getSections();
+            Map<String, PDFResumeUpdater.SectionInfo> actual = parallel.getSections();
+            assertEquals(expected.keySet(), actual.keySet());
+            for (String name : expected.keySet()) {
+                PDFResumeUpdater.SectionInfo want = expected.get(name);
+                PDFResumeUpdater.SectionInfo got = actual.get(name);
+                assertEquals(want.sectionName, got.sectionName, name);
+                assertEquals(want.pageIndex, got.pageIndex, name + " page");
+                assertEquals(want.xPosition, got.xPosition, 0f, name + " x");
+                assertEquals(want.yPosition, got.yPosition, 0f, name + " y");
+            }
+
+            // The later duplicate wins in both
+            PDFResumeUpdater.SectionInfo skills = actual.get("SKILLS");
+            assertEquals(0, skills.pageIndex);
+            assertEquals(650.06f, skills.yPosition, 0.5f, "SKILLS isn't the TECHNICAL SKILLS header");
+            assertEquals(1, actual.get("EDUCATION").pageIndex);
+
+            PDFResumeUpdater.FontInfo want = sequential.getDefaultFont();
+            PDFResumeUpdater.FontInfo got = parallel.getDefaultFont();
+            assertEquals(want.regular.getName(), got.regular.getName());
+            assertEquals(want.bold.getName(), got.bold.getName());
+            assertEquals(want.size, got.size, 0f);
+        } finally {
+            sequential.savePDF(dir.resolve("sequential.pdf").toString());
+            parallel.savePDF(dir.resolve("parallel.pdf").toString());
+        }
+    }
+
+    private static PDFResumeUpdater analyze(int parallelism) throws IOException {
+        PDFResumeUpdater updater = new PDFResumeUpdater();
+        updater.setAnalysisParallelism(parallelism);
+        updater.loadPDF(INPUT);
+        return updater;
+    }
+}